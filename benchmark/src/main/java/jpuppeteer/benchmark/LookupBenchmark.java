@@ -0,0 +1,113 @@
+package jpuppeteer.benchmark;
+
+import jpuppeteer.cdp.client.CDPEventType;
+import jpuppeteer.cdp.client.constant.input.MouseButton;
+import jpuppeteer.cdp.client.constant.network.ResourceType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 事件名和枚举值的查找, 每次调用轮换一个输入, 避免只命中同一个槽位
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LookupBenchmark {
+
+    private String[] eventNames;
+
+    private byte[][] eventNameBytes;
+
+    private String[] missingNames;
+
+    private String[] resourceTypes;
+
+    private String[] mouseButtons;
+
+    private int eventCursor;
+
+    private int missingCursor;
+
+    private int resourceTypeCursor;
+
+    private int mouseButtonCursor;
+
+    @Setup
+    public void setup() {
+        CDPEventType[] types = CDPEventType.values();
+        eventNames = new String[types.length];
+        eventNameBytes = new byte[types.length][];
+        missingNames = new String[types.length];
+        for (int i = 0; i < types.length; i++) {
+            //复制一份, 避免equals直接命中同一个引用
+            eventNames[i] = new String(types[i].getName().toCharArray());
+            eventNameBytes[i] = types[i].getName().getBytes(StandardCharsets.UTF_8);
+            missingNames[i] = types[i].getName() + "Missing";
+        }
+        ResourceType[] resources = ResourceType.values();
+        resourceTypes = new String[resources.length];
+        for (int i = 0; i < resources.length; i++) {
+            resourceTypes[i] = new String(resources[i].value().toCharArray());
+        }
+        MouseButton[] buttons = MouseButton.values();
+        mouseButtons = new String[buttons.length];
+        for (int i = 0; i < buttons.length; i++) {
+            mouseButtons[i] = new String(buttons[i].value().toCharArray());
+        }
+    }
+
+    @Benchmark
+    public CDPEventType findEventByName() {
+        if (++eventCursor == eventNames.length) {
+            eventCursor = 0;
+        }
+        return CDPEventType.findByName(eventNames[eventCursor]);
+    }
+
+    @Benchmark
+    public CDPEventType findEventByBytes() {
+        if (++eventCursor == eventNameBytes.length) {
+            eventCursor = 0;
+        }
+        byte[] bytes = eventNameBytes[eventCursor];
+        return CDPEventType.findByName(bytes, 0, bytes.length);
+    }
+
+    @Benchmark
+    public CDPEventType findEventByNameMissing() {
+        if (++missingCursor == missingNames.length) {
+            missingCursor = 0;
+        }
+        return CDPEventType.findByName(missingNames[missingCursor]);
+    }
+
+    @Benchmark
+    public ResourceType findResourceTypeByValue() {
+        if (++resourceTypeCursor == resourceTypes.length) {
+            resourceTypeCursor = 0;
+        }
+        return ResourceType.findByValue(resourceTypes[resourceTypeCursor]);
+    }
+
+    @Benchmark
+    public MouseButton findMouseButtonByValue() {
+        if (++mouseButtonCursor == mouseButtons.length) {
+            mouseButtonCursor = 0;
+        }
+        return MouseButton.findByValue(mouseButtons[mouseButtonCursor]);
+    }
+}
@@ -0,0 +1,45 @@
+package jpuppeteer.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+
+final class Samples {
+
+    private Samples() {
+    }
+
+    /**
+     * 读取samples目录下的json
+     */
+    static String read(String name) throws IOException {
+        try (InputStream in = Samples.class.getResourceAsStream("/samples/" + name)) {
+            if (in == null) {
+                throw new IOException("sample not found: " + name);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int len;
+            while ((len = in.read(buffer)) != -1) {
+                out.write(buffer, 0, len);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * 开启codecs生成时注册编解码器, 未开启时CDPCodecs不存在, 使用fastjson默认的编解码
+     */
+    static void registerCodecs() throws Exception {
+        Class<?> codecs;
+        try {
+            codecs = Class.forName("jpuppeteer.cdp.client.CDPCodecs");
+        } catch (ClassNotFoundException e) {
+            return;
+        }
+        Method register = codecs.getMethod("register");
+        register.invoke(null);
+    }
+}
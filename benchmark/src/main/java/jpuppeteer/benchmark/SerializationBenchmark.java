@@ -0,0 +1,123 @@
+package jpuppeteer.benchmark;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import jpuppeteer.cdp.client.CDPEventType;
+import jpuppeteer.cdp.client.entity.input.DispatchMouseEventRequest;
+import jpuppeteer.cdp.client.entity.network.RequestWillBeSentEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 高频事件和请求的编解码, 以及从原始消息到事件对象的完整分发路径
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+    private String eventJson;
+
+    private byte[] eventBytes;
+
+    private RequestWillBeSentEvent event;
+
+    private String requestJson;
+
+    private DispatchMouseEventRequest request;
+
+    @Setup
+    public void setup() throws Exception {
+        Samples.registerCodecs();
+        eventJson = JSON.toJSONString(JSON.parseObject(Samples.read("requestWillBeSent.json")));
+        eventBytes = eventJson.getBytes(StandardCharsets.UTF_8);
+        event = JSON.parseObject(eventJson, RequestWillBeSentEvent.class);
+        requestJson = JSON.toJSONString(JSON.parseObject(Samples.read("dispatchMouseEvent.json")));
+        request = JSON.parseObject(requestJson, DispatchMouseEventRequest.class);
+    }
+
+    @Benchmark
+    public RequestWillBeSentEvent parseRequestWillBeSentEvent() {
+        return JSON.parseObject(eventJson, RequestWillBeSentEvent.class);
+    }
+
+    @Benchmark
+    public RequestWillBeSentEvent parseRequestWillBeSentEventBytes() {
+        return JSON.parseObject(eventBytes, RequestWillBeSentEvent.class);
+    }
+
+    @Benchmark
+    public String writeRequestWillBeSentEvent() {
+        return JSON.toJSONString(event);
+    }
+
+    @Benchmark
+    public Object dispatchRequestWillBeSentEvent(Dispatch dispatch) throws Throwable {
+        return dispatch.dispatch();
+    }
+
+    @Benchmark
+    public DispatchMouseEventRequest parseDispatchMouseEventRequest() {
+        return JSON.parseObject(requestJson, DispatchMouseEventRequest.class);
+    }
+
+    @Benchmark
+    public String writeDispatchMouseEventRequest() {
+        return JSON.toJSONString(request);
+    }
+
+    /**
+     * 从原始消息到事件对象的分发, 开启eventDecoder时使用CDPEventDecoder,
+     * 否则读取method查找事件类型, 再把params转换为事件类
+     */
+    @State(Scope.Thread)
+    public static class Dispatch {
+
+        private String message;
+
+        private MethodHandle decoder;
+
+        @Setup
+        public void setup() throws Exception {
+            Samples.registerCodecs();
+            String params = JSON.toJSONString(JSON.parseObject(Samples.read("requestWillBeSent.json")));
+            message = "{\"method\":\"Network.requestWillBeSent\",\"params\":" + params + "}";
+            Class<?> clazz;
+            try {
+                clazz = Class.forName("jpuppeteer.cdp.client.CDPEventDecoder");
+            } catch (ClassNotFoundException e) {
+                clazz = null;
+            }
+            if (clazz != null) {
+                Method decode = clazz.getMethod("decode", String.class);
+                decoder = MethodHandles.publicLookup().unreflect(decode);
+            }
+        }
+
+        Object dispatch() throws Throwable {
+            if (decoder != null) {
+                return decoder.invoke(message);
+            }
+            JSONObject object = JSON.parseObject(message);
+            CDPEventType type = CDPEventType.findByName(object.getString("method"));
+            return object.getJSONObject("params").toJavaObject(type.getClazz());
+        }
+    }
+}
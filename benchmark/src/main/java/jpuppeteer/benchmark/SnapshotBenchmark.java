@@ -0,0 +1,200 @@
+package jpuppeteer.benchmark;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import jpuppeteer.cdp.client.entity.domsnapshot.CaptureSnapshotResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DOMSnapshot.captureSnapshot的返回值, 大量数字数组组成的大对象
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnapshotBenchmark {
+
+    private static final String[] NODE_NAMES = {"#document", "HTML", "HEAD", "BODY", "DIV", "SPAN", "A", "IMG", "UL", "LI", "#text"};
+
+    private static final String[] STYLES = {"block", "inline", "flex", "none", "rgb(0, 0, 0)", "rgba(0, 0, 0, 0)", "16px", "auto", "visible", "static"};
+
+    /**
+     * 文档中的节点数量
+     */
+    @Param({"100", "5000"})
+    public int nodes;
+
+    private String json;
+
+    private CaptureSnapshotResponse response;
+
+    @Setup
+    public void setup() throws Exception {
+        Samples.registerCodecs();
+        json = JSON.toJSONString(snapshot(nodes, new Random(42)));
+        response = JSON.parseObject(json, CaptureSnapshotResponse.class);
+    }
+
+    @Benchmark
+    public CaptureSnapshotResponse parseCaptureSnapshotResponse() {
+        return JSON.parseObject(json, CaptureSnapshotResponse.class);
+    }
+
+    @Benchmark
+    public String writeCaptureSnapshotResponse() {
+        return JSON.toJSONString(response);
+    }
+
+    /**
+     * 按协议结构生成固定种子的快照, 字符串都放在共享的strings中, 其他属性是对strings的下标
+     */
+    static JSONObject snapshot(int nodes, Random random) {
+        JSONArray strings = new JSONArray();
+        strings.add("https://www.example.com/");
+        strings.add("Example Domain");
+        strings.add("F6D5C4B3A2918070605040302010F0E0");
+        strings.add("UTF-8");
+        strings.add("");
+        int nameBase = strings.size();
+        for (String name : NODE_NAMES) {
+            strings.add(name);
+        }
+        int styleBase = strings.size();
+        for (String style : STYLES) {
+            strings.add(style);
+        }
+        int textBase = strings.size();
+        int texts = Math.max(1, nodes / 4);
+        for (int i = 0; i < texts; i++) {
+            strings.add("text content " + i);
+        }
+
+        JSONArray parentIndex = new JSONArray();
+        JSONArray nodeType = new JSONArray();
+        JSONArray nodeName = new JSONArray();
+        JSONArray nodeValue = new JSONArray();
+        JSONArray backendNodeId = new JSONArray();
+        JSONArray attributes = new JSONArray();
+        JSONArray clickable = new JSONArray();
+        JSONArray layoutNodeIndex = new JSONArray();
+        JSONArray layoutStyles = new JSONArray();
+        JSONArray layoutBounds = new JSONArray();
+        JSONArray layoutText = new JSONArray();
+        JSONArray stacking = new JSONArray();
+        JSONArray boxLayoutIndex = new JSONArray();
+        JSONArray boxBounds = new JSONArray();
+        JSONArray boxStart = new JSONArray();
+        JSONArray boxLength = new JSONArray();
+        for (int i = 0; i < nodes; i++) {
+            boolean text = i > 0 && random.nextInt(3) == 0;
+            parentIndex.add(i == 0 ? -1 : random.nextInt(i));
+            nodeType.add(i == 0 ? 9 : text ? 3 : 1);
+            nodeName.add(nameBase + (text ? NODE_NAMES.length - 1 : random.nextInt(NODE_NAMES.length - 1)));
+            nodeValue.add(text ? textBase + random.nextInt(texts) : -1);
+            backendNodeId.add(i + 1);
+            JSONArray attrs = new JSONArray();
+            if (!text && random.nextBoolean()) {
+                attrs.add(styleBase + random.nextInt(STYLES.length));
+                attrs.add(styleBase + random.nextInt(STYLES.length));
+            }
+            attributes.add(attrs);
+            if (random.nextInt(10) == 0) {
+                clickable.add(i);
+            }
+            if (random.nextInt(4) != 0) {
+                int layout = layoutNodeIndex.size();
+                layoutNodeIndex.add(i);
+                JSONArray styles = new JSONArray();
+                for (int j = 0; j < 3; j++) {
+                    styles.add(styleBase + random.nextInt(STYLES.length));
+                }
+                layoutStyles.add(styles);
+                layoutBounds.add(bounds(random));
+                layoutText.add(text ? nodeValue.getIntValue(i) : -1);
+                if (random.nextInt(20) == 0) {
+                    stacking.add(layout);
+                }
+                if (text) {
+                    boxLayoutIndex.add(layout);
+                    boxBounds.add(bounds(random));
+                    boxStart.add(0);
+                    boxLength.add(1 + random.nextInt(40));
+                }
+            }
+        }
+
+        JSONObject nodeTree = new JSONObject(true);
+        nodeTree.put("parentIndex", parentIndex);
+        nodeTree.put("nodeType", nodeType);
+        nodeTree.put("nodeName", nodeName);
+        nodeTree.put("nodeValue", nodeValue);
+        nodeTree.put("backendNodeId", backendNodeId);
+        nodeTree.put("attributes", attributes);
+        nodeTree.put("isClickable", index(clickable));
+        JSONObject layout = new JSONObject(true);
+        layout.put("nodeIndex", layoutNodeIndex);
+        layout.put("styles", layoutStyles);
+        layout.put("bounds", layoutBounds);
+        layout.put("text", layoutText);
+        layout.put("stackingContexts", index(stacking));
+        JSONObject textBoxes = new JSONObject(true);
+        textBoxes.put("layoutIndex", boxLayoutIndex);
+        textBoxes.put("bounds", boxBounds);
+        textBoxes.put("start", boxStart);
+        textBoxes.put("length", boxLength);
+
+        JSONObject document = new JSONObject(true);
+        document.put("documentURL", 0);
+        document.put("title", 1);
+        document.put("baseURL", 0);
+        document.put("contentLanguage", 4);
+        document.put("encodingName", 3);
+        document.put("publicId", 4);
+        document.put("systemId", 4);
+        document.put("frameId", 2);
+        document.put("nodes", nodeTree);
+        document.put("layout", layout);
+        document.put("textBoxes", textBoxes);
+        document.put("scrollOffsetX", 0);
+        document.put("scrollOffsetY", 0);
+        document.put("contentWidth", 1280);
+        document.put("contentHeight", 720 + nodes);
+        JSONArray documents = new JSONArray();
+        documents.add(document);
+        JSONObject snapshot = new JSONObject(true);
+        snapshot.put("documents", documents);
+        snapshot.put("strings", strings);
+        return snapshot;
+    }
+
+    private static JSONArray bounds(Random random) {
+        JSONArray bounds = new JSONArray();
+        bounds.add(random.nextInt(1280));
+        bounds.add(random.nextInt(4000));
+        bounds.add(random.nextInt(600) + 0.5);
+        bounds.add(random.nextInt(80) + 0.25);
+        return bounds;
+    }
+
+    private static JSONObject index(JSONArray index) {
+        JSONObject data = new JSONObject(true);
+        data.put("index", index);
+        return data;
+    }
+}
@@ -0,0 +1,85 @@
+package jpuppeteer.cdp;
+
+import jpuppeteer.util.XFuture;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 只用于编译生成的domain类, 基准测试不经过connection,
+ * CDPMethod只在开启preEncodedMethods时生成, 以CDPMethod为参数的重载使用Enum接收
+ */
+public class CDPConnection {
+
+    public <T> XFuture<T> send(String method, Object request, Class<T> clazz) {
+        throw new UnsupportedOperationException();
+    }
+
+    public XFuture<?> send(String method, Object request) {
+        throw new UnsupportedOperationException();
+    }
+
+    public <T> XFuture<T> send(Enum<?> method, Object request, Class<T> clazz) {
+        throw new UnsupportedOperationException();
+    }
+
+    public XFuture<?> send(Enum<?> method, Object request) {
+        throw new UnsupportedOperationException();
+    }
+
+    public <T> XFuture<List<T>> sendBatch(String method, List<?> requests, Class<T> clazz) {
+        throw new UnsupportedOperationException();
+    }
+
+    public XFuture<?> sendBatch(String method, List<?> requests) {
+        throw new UnsupportedOperationException();
+    }
+
+    public <T> XFuture<List<T>> sendBatch(Enum<?> method, List<?> requests, Class<T> clazz) {
+        throw new UnsupportedOperationException();
+    }
+
+    public XFuture<?> sendBatch(Enum<?> method, List<?> requests) {
+        throw new UnsupportedOperationException();
+    }
+
+    public <T> XFuture<T> sendReusing(String method, Object request, Class<T> clazz) {
+        throw new UnsupportedOperationException();
+    }
+
+    public XFuture<?> sendReusing(String method, Object request) {
+        throw new UnsupportedOperationException();
+    }
+
+    public <T> XFuture<T> sendReusing(Enum<?> method, Object request, Class<T> clazz) {
+        throw new UnsupportedOperationException();
+    }
+
+    public XFuture<?> sendReusing(Enum<?> method, Object request) {
+        throw new UnsupportedOperationException();
+    }
+
+    public void sendNoReply(String method, Object request) {
+        throw new UnsupportedOperationException();
+    }
+
+    public void sendNoReply(Enum<?> method, Object request) {
+        throw new UnsupportedOperationException();
+    }
+
+    public <T> T sendBlocking(String method, Object request, Class<T> clazz, long timeout, TimeUnit unit) {
+        throw new UnsupportedOperationException();
+    }
+
+    public void sendBlocking(String method, Object request, long timeout, TimeUnit unit) {
+        throw new UnsupportedOperationException();
+    }
+
+    public <T> T sendBlocking(Enum<?> method, Object request, Class<T> clazz, long timeout, TimeUnit unit) {
+        throw new UnsupportedOperationException();
+    }
+
+    public void sendBlocking(Enum<?> method, Object request, long timeout, TimeUnit unit) {
+        throw new UnsupportedOperationException();
+    }
+}
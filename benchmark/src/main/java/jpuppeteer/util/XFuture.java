@@ -0,0 +1,6 @@
+package jpuppeteer.util;
+
+import java.util.concurrent.CompletableFuture;
+
+public class XFuture<T> extends CompletableFuture<T> {
+}
@@ -0,0 +1,174 @@
+package jpuppeteer.benchmark;
+
+import com.alibaba.fastjson.JSON;
+import jpuppeteer.cdp.client.constant.input.DispatchMouseEventRequestType;
+import jpuppeteer.cdp.client.constant.input.MouseButton;
+import jpuppeteer.cdp.client.entity.input.DispatchMouseEventRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * primitiveFields生成的可选基本类型属性: 装箱的getter及构造方法与hasXxx(), getXxxValue()及基本类型setter的对比,
+ * hasXxx()和getXxxValue()只在primitiveFields生成时存在, 由pom中的primitive-fields profile加入编译
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrimitiveFieldsBenchmark {
+
+    private DispatchMouseEventRequest request;
+
+    private double x = 512.5;
+
+    private int clickCount = 1;
+
+    private double force = 0.5;
+
+    @Setup
+    public void setup() throws Exception {
+        Samples.registerCodecs();
+        request = JSON.parseObject(Samples.read("dispatchMouseEvent.json"), DispatchMouseEventRequest.class);
+        request.setTimestamp(1600000000.125);
+        request.setForce(0.5);
+        request.setTiltX(30);
+        request.setTiltY(-30);
+        request.setDeltaX(120.5);
+        request.setDeltaY(-240.5);
+    }
+
+    @Benchmark
+    public double readBoxed() {
+        DispatchMouseEventRequest request = this.request;
+        double sum = 0;
+        Integer modifiers = request.getModifiers();
+        if (modifiers != null) {
+            sum += modifiers;
+        }
+        Double timestamp = request.getTimestamp();
+        if (timestamp != null) {
+            sum += timestamp;
+        }
+        Integer clickCount = request.getClickCount();
+        if (clickCount != null) {
+            sum += clickCount;
+        }
+        Double force = request.getForce();
+        if (force != null) {
+            sum += force;
+        }
+        Integer tiltX = request.getTiltX();
+        if (tiltX != null) {
+            sum += tiltX;
+        }
+        Integer tiltY = request.getTiltY();
+        if (tiltY != null) {
+            sum += tiltY;
+        }
+        Double deltaX = request.getDeltaX();
+        if (deltaX != null) {
+            sum += deltaX;
+        }
+        Double deltaY = request.getDeltaY();
+        if (deltaY != null) {
+            sum += deltaY;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double readPrimitive() {
+        DispatchMouseEventRequest request = this.request;
+        double sum = 0;
+        if (request.hasModifiers()) {
+            sum += request.getModifiersValue();
+        }
+        if (request.hasTimestamp()) {
+            sum += request.getTimestampValue();
+        }
+        if (request.hasClickCount()) {
+            sum += request.getClickCountValue();
+        }
+        if (request.hasForce()) {
+            sum += request.getForceValue();
+        }
+        if (request.hasTiltX()) {
+            sum += request.getTiltXValue();
+        }
+        if (request.hasTiltY()) {
+            sum += request.getTiltYValue();
+        }
+        if (request.hasDeltaX()) {
+            sum += request.getDeltaXValue();
+        }
+        if (request.hasDeltaY()) {
+            sum += request.getDeltaYValue();
+        }
+        return sum;
+    }
+
+    /**
+     * 读取的值交给没有内联的代码, 装箱对象无法被逃逸分析消除
+     */
+    @Benchmark
+    public void consumeBoxed(Blackhole blackhole) {
+        DispatchMouseEventRequest request = this.request;
+        blackhole.consume(request.getTimestamp());
+        blackhole.consume(request.getForce());
+        blackhole.consume(request.getTiltX());
+        blackhole.consume(request.getTiltY());
+        blackhole.consume(request.getDeltaX());
+        blackhole.consume(request.getDeltaY());
+    }
+
+    @Benchmark
+    public void consumePrimitive(Blackhole blackhole) {
+        DispatchMouseEventRequest request = this.request;
+        blackhole.consume(request.getTimestampValue());
+        blackhole.consume(request.getForceValue());
+        blackhole.consume(request.getTiltXValue());
+        blackhole.consume(request.getTiltYValue());
+        blackhole.consume(request.getDeltaXValue());
+        blackhole.consume(request.getDeltaYValue());
+    }
+
+    @Benchmark
+    public DispatchMouseEventRequest createBoxed() {
+        return new DispatchMouseEventRequest(DispatchMouseEventRequestType.MOUSEPRESSED, x, 384, 0, 1600000000.125,
+                MouseButton.LEFT, 1, clickCount, force, null, 30, -30, null, 120.5, -240.5, null);
+    }
+
+    @Benchmark
+    public DispatchMouseEventRequest createPrimitive() {
+        DispatchMouseEventRequest request = new DispatchMouseEventRequest(DispatchMouseEventRequestType.MOUSEPRESSED, x, 384);
+        request.setButton(MouseButton.LEFT);
+        request.setModifiers(0);
+        request.setTimestamp(1600000000.125);
+        request.setButtons(1);
+        request.setClickCount(clickCount);
+        request.setForce(force);
+        request.setTiltX(30);
+        request.setTiltY(-30);
+        request.setDeltaX(120.5);
+        request.setDeltaY(-240.5);
+        return request;
+    }
+
+    @Benchmark
+    public String writeRequest() {
+        return JSON.toJSONString(request);
+    }
+}
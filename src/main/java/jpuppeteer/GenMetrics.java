@@ -0,0 +1,155 @@
+package jpuppeteer;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.serializer.SerializerFeature;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 生成过程的统计: 各阶段耗时, 并行部分按线程累加的耗时, 以及每个domain写出的文件数量和字节数
+ */
+class GenMetrics {
+
+    /**
+     * 不属于任何domain的公共类
+     */
+    static final String SHARED = "(shared)";
+
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * 按执行顺序记录的各阶段耗时
+     */
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+
+    /**
+     * 并行生成中各类工作的耗时, 多个线程累加, io包含在其他工作之中
+     */
+    private final Map<String, LongAdder> activities = new ConcurrentHashMap<>();
+
+    private final Map<String, LongAdder> files = new ConcurrentHashMap<>();
+
+    private final Map<String, LongAdder> bytes = new ConcurrentHashMap<>();
+
+    /**
+     * 当前线程正在生成的domain
+     */
+    private final ThreadLocal<String> domain = new ThreadLocal<>();
+
+    /**
+     * 记录从since开始的阶段耗时
+     * @return 当前时间, 作为下一个阶段的开始
+     */
+    long phase(String name, long since) {
+        long now = System.nanoTime();
+        phases.merge(name, now - since, Long::sum);
+        return now;
+    }
+
+    void add(String activity, long since) {
+        activities.computeIfAbsent(activity, key -> new LongAdder()).add(System.nanoTime() - since);
+    }
+
+    /**
+     * 设置当前线程生成的domain
+     * @return 之前的domain, 结束时通过此值恢复
+     */
+    String enterDomain(String name) {
+        String previous = domain.get();
+        domain.set(name);
+        return previous;
+    }
+
+    void exitDomain(String previous) {
+        if (previous == null) {
+            domain.remove();
+        } else {
+            domain.set(previous);
+        }
+    }
+
+    void file(int length) {
+        String name = domain.get();
+        if (name == null) {
+            name = SHARED;
+        }
+        files.computeIfAbsent(name, key -> new LongAdder()).increment();
+        bytes.computeIfAbsent(name, key -> new LongAdder()).add(length);
+    }
+
+    long totalFiles() {
+        long total = 0;
+        for (LongAdder adder : files.values()) {
+            total += adder.sum();
+        }
+        return total;
+    }
+
+    long totalBytes() {
+        long total = 0;
+        for (LongAdder adder : bytes.values()) {
+            total += adder.sum();
+        }
+        return total;
+    }
+
+    long totalMillis() {
+        return (System.nanoTime() - startNanos) / 1000000;
+    }
+
+    /**
+     * 一行的阶段耗时摘要, 用于日志
+     */
+    String summary() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Long> entry : phases.entrySet()) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(entry.getKey()).append(' ').append(entry.getValue() / 1000000).append(" ms");
+        }
+        return sb.toString();
+    }
+
+    void write(File file, Map<String, Object> info) throws IOException {
+        Map<String, Object> report = new LinkedHashMap<>(info);
+        report.put("totalMillis", totalMillis());
+        Map<String, Object> phaseMillis = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> entry : phases.entrySet()) {
+            phaseMillis.put(entry.getKey(), millis(entry.getValue()));
+        }
+        report.put("phases", phaseMillis);
+        Map<String, Object> activityMillis = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> entry : activities.entrySet()) {
+            activityMillis.put(entry.getKey(), millis(entry.getValue().sum()));
+        }
+        report.put("activities", activityMillis);
+        report.put("files", totalFiles());
+        report.put("bytes", totalBytes());
+        Map<String, Object> domains = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> entry : files.entrySet()) {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("files", entry.getValue().sum());
+            stats.put("bytes", bytes.get(entry.getKey()).sum());
+            domains.put(entry.getKey(), stats);
+        }
+        report.put("domains", domains);
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.exists()) {
+            dir.mkdirs();
+        }
+        Files.write(file.toPath(), JSON.toJSONString(report, SerializerFeature.PrettyFormat).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / 1000.0) / 1000.0;
+    }
+}
@@ -1,24 +1,87 @@
 package jpuppeteer;
 
-import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONReader;
 import com.alibaba.fastjson.annotation.JSONField;
 import com.alibaba.fastjson.parser.Feature;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.model.Resource;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
 
 import java.io.*;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
 import java.security.cert.CRL;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
 
-@Mojo(name = "gen")
+@Mojo(name = "gen", requiresDependencyResolution = ResolutionScope.COMPILE)
 public class GenMojo extends AbstractMojo {
 
     private static final String ENUM_CLASS = "CDPEnum";
 
+    private static final String NAMES_CLASS = "CDPNames";
+
+    private static final String CODECS_CLASS = "CDPCodecs";
+
+    private static final String EVENT_TYPE_CLASS = "CDPEventType";
+
+    private static final String EVENT_DECODER_CLASS = "CDPEventDecoder";
+
+    private static final String LAZY_CLASS = "CDPLazyObject";
+
+    private static final String DISPATCHER_CLASS = "CDPEventDispatcher";
+
+    private static final String BINARY_CLASS = "CDPBinary";
+
+    private static final String METHOD_CLASS = "CDPMethod";
+
+    /**
+     * 协议中binary类型的属性转换为json后的描述
+     */
+    private static final String BASE64_MARKER = "(Encoded as a base64 string when passed over JSON)";
+
+    /**
+     * 清单文件中记录baseDir的行, hash使用16进制, 不会与此前缀冲突
+     */
+    private static final String MANIFEST_ROOT = "# baseDir ";
+
+    /**
+     * 协议模型的版本, 参与模型缓存的key, Document, Domain, Type等可序列化的属性变化时必须加1,
+     * 同一个SNAPSHOT版本的插件也不会读取到旧的模型
+     */
+    private static final int MODEL_VERSION = 1;
+
+    /**
+     * 模型缓存中允许反序列化的类: 模型类及其使用的JDK类
+     */
+    private static final Set<String> MODEL_CACHE_CLASSES = new HashSet<>(Arrays.asList(
+            Document.class.getName(), Version.class.getName(), Domain.class.getName(), Event.class.getName(),
+            Command.class.getName(), Type.class.getName(), TypeType.class.getName(),
+            "java.lang.String", "java.lang.Enum", "java.util.ArrayList", "java.util.LinkedList"));
+
     private static final String CRLF = "\r\n";
 
     @Parameter
@@ -39,45 +102,365 @@ public class GenMojo extends AbstractMojo {
     @Parameter
     private File jsProtocol;
 
-    private Map<String, Type> typeMap = new HashMap<>();
+    /**
+     * 增量模式: 内容未变化的文件不重写, 上次生成而本次不再生成的文件会被删除
+     */
+    @Parameter(defaultValue = "false")
+    private boolean incremental;
+
+    /**
+     * 记录已生成文件内容hash的清单文件
+     */
+    @Parameter(defaultValue = "${project.build.directory}/jpuppeteer-generator/manifest")
+    private File manifestFile;
+
+    /**
+     * 并行生成使用的线程数, 0表示使用cpu核数, 1表示单线程生成
+     */
+    @Parameter(defaultValue = "0")
+    private int threads;
+
+    /**
+     * number, integer, boolean类型的属性生成为double, int, boolean, 可选属性通过位标记区分是否赋值
+     */
+    @Parameter(defaultValue = "false")
+    private boolean primitiveFields;
+
+    /**
+     * 为每个实体类生成fastjson编解码器, 并生成注册所有编解码器的CDPCodecs类
+     */
+    @Parameter(defaultValue = "false")
+    private boolean codecs;
+
+    /**
+     * 生成CDPEventDecoder, 单次解析消息并把事件参数直接解码为事件类
+     */
+    @Parameter(defaultValue = "false")
+    private boolean eventDecoder;
+
+    /**
+     * 事件类保留原始的UTF-8字节, 每个属性在第一次调用getter时才解码
+     */
+    @Parameter(defaultValue = "false")
+    private boolean lazyEvents;
+
+    /**
+     * 为每个domain生成事件监听接口, 并生成按事件序号分发的CDPEventDispatcher
+     */
+    @Parameter(defaultValue = "false")
+    private boolean listeners;
+
+    /**
+     * 只生成匹配的command和event, 格式为Domain, Domain.*或Domain.name, 为空表示全部生成
+     */
+    @Parameter
+    private List<String> includes;
+
+    /**
+     * 不生成匹配的command和event, 格式同includes
+     */
+    @Parameter
+    private List<String> excludes;
+
+    /**
+     * binary类型及描述中标记为base64的string属性生成为CDPBinary, 访问时才解码
+     */
+    @Parameter(defaultValue = "false")
+    private boolean binary;
+
+    /**
+     * 开启binary时额外作为base64处理的属性, 格式为Domain.Class.property
+     */
+    @Parameter
+    private List<String> binaryFields;
+
+    /**
+     * 为有参数的command额外生成批量调用的方法, 需要connection提供sendBatch方法
+     */
+    @Parameter(defaultValue = "false")
+    private boolean batchCommands;
+
+    /**
+     * 为没有返回值的command额外生成xxxNoReply方法, 不创建future, 需要connection提供不等待响应的sendNoReply方法
+     */
+    @Parameter(defaultValue = "false")
+    private boolean oneWayCommands;
+
+    /**
+     * 为每个command额外生成带超时的xxxBlocking方法, 直接返回响应, 需要connection提供sendBlocking方法
+     */
+    @Parameter(defaultValue = "false")
+    private boolean blockingCommands;
+
+    /**
+     * 请求对象可以重复使用的command, 格式同includes, 请求类生成reset()及返回this的setter,
+     * 并生成xxxReusing方法, 需要connection提供在返回前完成序列化的sendReusing方法
+     */
+    @Parameter
+    private List<String> reusableRequests;
+
+    /**
+     * 缓存解析后的协议模型, 协议文件及插件版本不变时直接加载, 不再解析json
+     */
+    @Parameter(defaultValue = "false")
+    private boolean modelCache;
+
+    /**
+     * 协议模型缓存目录, 多个模块指定同一个目录时共享缓存
+     */
+    @Parameter(defaultValue = "${project.build.directory}/jpuppeteer-generator/cache")
+    private File cacheDir;
+
+    /**
+     * 工程的构建目录, 没有指定cacheDir时缓存放在其中
+     */
+    @Parameter(defaultValue = "${project.build.directory}", readonly = true)
+    private File buildDirectory;
+
+    @Parameter(defaultValue = "${plugin.version}", readonly = true)
+    private String pluginVersion;
+
+    /**
+     * 预编译模式: domain包以外的类在插件内用javac编译到单独的classesDirectory, 源码打包为sourcesJar供IDE使用,
+     * classesDirectory作为资源目录加入工程, 在process-resources阶段复制到工程的输出目录,
+     * 只有依赖connection的domain类写入baseDir由项目编译
+     */
+    @Parameter(defaultValue = "false")
+    private boolean precompile;
+
+    /**
+     * 预编译的源码不写出为单个文件, 只保存在内存中, 编译后一次写入sourcesJar, 需要同时开启precompile
+     */
+    @Parameter(defaultValue = "false")
+    private boolean srcjar;
+
+    /**
+     * 会话类的类名, 生成在pkg下, 为每个domain提供延迟创建的线程安全访问方法, 为空时不生成
+     */
+    @Parameter
+    private String sessionClassName;
+
+    /**
+     * 生成统计报告, 包含各阶段耗时及每个domain写出的文件数量和字节数
+     */
+    @Parameter(defaultValue = "${project.build.directory}/jpuppeteer-generator/report.json")
+    private File reportFile;
+
+    /**
+     * 同一个domain中枚举值相同的内联枚举合并为一个类, 与具名枚举相同时直接使用具名枚举,
+     * 结构相同的command返回值合并为一个Response类, 请求类和事件类保持不变;
+     * 合并的类不借用某个使用者的名称: 返回值以属性名拼接加Response命名, 内联枚举以属性名命名,
+     * 与domain中其它类名冲突时加Shared前缀, 类的javadoc列出所有使用者
+     */
+    @Parameter(defaultValue = "false")
+    private boolean dedupeTypes;
+
+    /**
+     * 生成CDPMethod枚举, 序号作为command的连续id, 并保存预先编码的方法名片段, domain类把CDPMethod传给connection,
+     * 需要connection提供send, sendBatch, sendReusing以CDPMethod为第一个参数的重载
+     */
+    @Parameter(defaultValue = "false")
+    private boolean preEncodedMethods;
+
+    /**
+     * 实体类生成为不可变类: final属性, 构造时计算hashCode, 通过Builder创建及反序列化,
+     * 延迟解码的事件类及可复用的请求类仍然是可变类
+     */
+    @Parameter(defaultValue = "false")
+    private boolean immutableEntities;
+
+    /**
+     * 预编译类的输出目录, 只存放预编译的类
+     */
+    @Parameter(defaultValue = "${project.build.directory}/jpuppeteer-generator/classes")
+    private File classesDirectory;
+
+    @Parameter(defaultValue = "${project}", readonly = true)
+    private MavenProject project;
+
+    /**
+     * 预编译类的源码目录, 不能是项目的源码目录
+     */
+    @Parameter(defaultValue = "${project.build.directory}/jpuppeteer-generator/sources")
+    private File precompileSourceDir;
+
+    @Parameter(defaultValue = "${project.build.directory}/jpuppeteer-generator/generated-sources.jar")
+    private File sourcesJar;
+
+    @Parameter(defaultValue = "${maven.compiler.target}")
+    private String target;
+
+    @Parameter(defaultValue = "${project.compileClasspathElements}", readonly = true)
+    private List<String> classpathElements;
+
+    private Map<String, Type> typeMap = new ConcurrentHashMap<>();
+
+    private Map<String, String> previousManifest = new HashMap<>();
+
+    /**
+     * 上次生成时的baseDir, 清单中的路径都相对于此目录
+     */
+    private String previousManifestRoot;
+
+    private Map<String, String> currentManifest = new ConcurrentHashMap<>();
+
+    private AtomicInteger writtenCount = new AtomicInteger();
+
+    private AtomicInteger unchangedCount = new AtomicInteger();
+
+    private Set<String> codecClasses = ConcurrentHashMap.newKeySet();
+
+    private Set<String> codecEnums = ConcurrentHashMap.newKeySet();
+
+    private GenMetrics metrics = new GenMetrics();
+
+    /**
+     * srcjar模式下的预编译源码, key与清单相同
+     */
+    private Map<String, byte[]> memorySources = new ConcurrentHashMap<>();
+
+    /**
+     * 已经确认存在的目录, 仅作为跳过mkdirs的提示, 未命中时总是调用mkdirs
+     */
+    private Set<String> createdDirs = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 每个domain已经生成的内联枚举, key为类名, 开启dedupeTypes时还有枚举值列表, value为完整类名
+     */
+    private Map<String, Map<Object, String>> inlineEnums = new ConcurrentHashMap<>();
+
+    /**
+     * 每个domain中会被合并的类型, key为返回值的结构或内联枚举的枚举值列表, value的id及description为合并后的类名及说明
+     */
+    private Map<String, Map<Object, Type>> sharedTypes = new ConcurrentHashMap<>();
+
+    private AtomicInteger dedupedCount = new AtomicInteger();
 
     public void execute() throws MojoExecutionException, MojoFailureException {
         try {
+            long phase = System.nanoTime();
             Type.pkg = pkg;
-            getLog().info("parse browser protocol");
-            Document browserDoc = readProtocol(browserProtocol);
-            getLog().info("parse javascript protocol");
-            Document jsDoc = readProtocol(jsProtocol);
-            if (!browserDoc.version.equals(jsDoc.version)) {
-                throw new MojoFailureException("browser and js protocol not match");
+            if (manifestFile == null) {
+                manifestFile = new File(baseDir, ".jpuppeteer-generator.manifest");
             }
-            //生成枚举接口
-            createEnumInterface();
-            browserDoc.domains.addAll(jsDoc.domains);
+            //只有增量模式及预编译模式需要上次生成的清单
+            boolean useManifest = incremental || precompile;
+            if (useManifest) {
+                previousManifest = readManifest(manifestFile);
+                if (!previousManifest.isEmpty() && !manifestRoot().equals(previousManifestRoot)) {
+                    //baseDir已经变化, 清单中的路径不能用于当前目录, 不删除任何文件
+                    getLog().info("manifest " + manifestFile + " was written for another baseDir, ignore it");
+                    previousManifest = new HashMap<>();
+                }
+            }
+            if (cacheDir == null && buildDirectory != null) {
+                //缓存不写入源码目录
+                cacheDir = new File(buildDirectory, "jpuppeteer-generator/cache");
+            }
+            if (modelCache && cacheDir == null) {
+                throw new MojoFailureException("modelCache requires cacheDir");
+            }
+            if (precompile && (classesDirectory == null || precompileSourceDir == null || sourcesJar == null)) {
+                throw new MojoFailureException("precompile requires classesDirectory, precompileSourceDir and sourcesJar");
+            }
+            if (srcjar && !precompile) {
+                throw new MojoFailureException("srcjar requires precompile");
+            }
+            File cacheFile = modelCache ? new File(cacheDir, "model-" + modelCacheKey() + ".bin") : null;
+            Document browserDoc = cacheFile != null ? readModelCache(cacheFile) : null;
+            boolean cached = browserDoc != null;
+            if (!cached) {
+                browserDoc = parseProtocols();
+            }
+            phase = metrics.phase("parse", phase);
             getLog().info("protocol version " + browserDoc.version.major + "." + browserDoc.version.minor);
             //处理types的引用
             for (Domain domain : browserDoc.domains) {
                 if (isNotEmpty(domain.types)) {
                     for (Type type : domain.types) {
                         type.domain = domain;
-                        typeMap.put(domain.domain + "." + type.id, type);
+                        type.qualifiedName = (domain.domain + "." + type.id).intern();
+                        typeMap.put(type.qualifiedName, type);
                     }
                 }
             }
-            Map<String, Type> events = new LinkedHashMap<>();
-            for (Domain domain : browserDoc.domains) {
-                //生成type
-                if (isNotEmpty(domain.types)) {
-                    for (Type type : domain.types) {
-                        createType(domain, type);
-                    }
-                }
-                //生成接口
-                createCommand(domain);
-                //生成事件
-                events.putAll(createEvent(domain));
+            phase = metrics.phase("index", phase);
+            //链接所有$ref, 之后各阶段不再按名称查找
+            resolveTypes(browserDoc.domains);
+            phase = metrics.phase("resolve", phase);
+            if (cacheFile != null && !cached) {
+                //缓存的只是解析json得到的模型, 引用链接是transient字段, 加载后由index及resolve阶段重新建立,
+                //resolve之后才写入, 引用有错误的协议不会被缓存
+                writeModelCache(cacheFile, browserDoc);
+                phase = metrics.phase("cache", phase);
+            }
+            List<Domain> domains = browserDoc.domains;
+            if (isNotEmpty(includes) || isNotEmpty(excludes)) {
+                domains = shakeDomains(domains);
+                phase = metrics.phase("shake", phase);
             }
+            Map<String, Type> events = createDomains(domains);
+            phase = metrics.phase("domains", phase);
+            //生成枚举接口
+            createEnumInterface();
+            createNamesClass();
             createEventEnum(events);
+            if (preEncodedMethods) {
+                createMethodEnum(domains);
+            }
+            if (binary) {
+                createBinaryClass();
+                if (codecs) {
+                    codecClasses.add(pkg + "." + BINARY_CLASS);
+                }
+            }
+            if (codecs || eventDecoder) {
+                //事件解码器依赖CDPCodecs中的读取方法
+                createCodecRegistry();
+            }
+            if (lazyEvents) {
+                createLazyClass();
+            }
+            if (eventDecoder) {
+                createEventDecoder(events);
+            }
+            if (listeners) {
+                createEventDispatcher(events);
+            }
+            if (StringUtils.isNotEmpty(sessionClassName)) {
+                createSession(domains);
+            }
+            phase = metrics.phase("support", phase);
+            int staleCount = 0;
+            if (incremental) {
+                staleCount = deleteStaleFiles();
+            }
+            if (precompile) {
+                precompileSources();
+                phase = metrics.phase("precompile", phase);
+            }
+            if (useManifest) {
+                writeManifest(manifestFile);
+                metrics.phase("manifest", phase);
+            }
+            getLog().info(String.format("%d files written, %d unchanged, %d stale removed", writtenCount.get(), unchangedCount.get(), staleCount));
+            if (dedupeTypes) {
+                getLog().info(dedupedCount.get() + " duplicate types merged");
+            }
+            getLog().info(String.format("%d files, %d bytes generated in %d ms (%s)", metrics.totalFiles(), metrics.totalBytes(), metrics.totalMillis(), metrics.summary()));
+            if (reportFile != null) {
+                Map<String, Object> info = new LinkedHashMap<>();
+                info.put("protocolVersion", browserDoc.version.major + "." + browserDoc.version.minor);
+                info.put("pluginVersion", pluginVersion);
+                info.put("threads", parallelism());
+                info.put("modelCached", cached);
+                info.put("written", writtenCount.get());
+                info.put("unchanged", unchangedCount.get());
+                info.put("stale", staleCount);
+                info.put("deduped", dedupedCount.get());
+                metrics.write(reportFile, info);
+                getLog().info("report written to " + reportFile);
+            }
             getLog().info("generate success");
         } catch (MojoExecutionException | MojoFailureException e0) {
             throw e0;
@@ -86,684 +469,4361 @@ public class GenMojo extends AbstractMojo {
         }
     }
 
-    private static boolean isNotEmpty(Collection collection) {
-        return collection != null && collection.size() > 0;
+    /**
+     * 解析browser及js协议并合并为一个模型
+     */
+    private Document parseProtocols() throws Exception {
+        getLog().info("parse browser and javascript protocol");
+        //js协议在另一个线程中同时解析
+        ForkJoinTask<Document> jsTask = parallelism() > 1 ? ForkJoinPool.commonPool().submit(() -> readProtocol(jsProtocol)) : null;
+        Document browserDoc = readProtocol(browserProtocol);
+        Document jsDoc = jsTask != null ? get(jsTask) : readProtocol(jsProtocol);
+        if (!browserDoc.version.equals(jsDoc.version)) {
+            throw new MojoFailureException("browser and js protocol not match");
+        }
+        browserDoc.domains.addAll(jsDoc.domains);
+        return browserDoc;
     }
 
-    private static boolean isEmpty(Collection collection) {
-        return !isNotEmpty(collection);
+    /**
+     * 缓存的key, 由两个协议文件的内容及插件版本计算
+     */
+    private String modelCacheKey() throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        digest.update(Files.readAllBytes(browserProtocol.toPath()));
+        digest.update(Files.readAllBytes(jsProtocol.toPath()));
+        digest.update(String.valueOf(pluginVersion).getBytes(StandardCharsets.UTF_8));
+        digest.update(String.valueOf(MODEL_VERSION).getBytes(StandardCharsets.UTF_8));
+        return hex(digest.digest());
     }
 
-    private void writeFile(String filename, StringBuffer sb) throws Exception {
-        getLog().info("write file:" + filename);
-        File java = new File(filename);
-        if (java.exists()) {
-            java.delete();
+    /**
+     * 读取缓存的模型, 缓存不存在或者不兼容时返回null
+     */
+    private Document readModelCache(File file) {
+        if (!file.isFile()) {
+            return null;
         }
-        java.createNewFile();
-        OutputStream os = new FileOutputStream(java);
-        os.write(sb.toString().getBytes("UTF-8"));
-        os.flush();
-        os.close();
-    }
-
-    private void createEnumInterface() throws Exception {
-        String pkg = this.pkg;
-        String dirName = baseDir + "/" + pkg.replace(".", "/");
-        File dir = new File(dirName);
-        if (!dir.exists()) {
-            dir.mkdirs();
+        try (ObjectInputStream in = new ModelInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024))) {
+            Document document = (Document) in.readObject();
+            getLog().info("load protocol model from " + file);
+            return document;
+        } catch (Exception e) {
+            getLog().warn("ignore unreadable protocol model cache " + file + ": " + e);
+            return null;
         }
-        StringBuffer sb = new StringBuffer();
-        sb.append("package ");
-        sb.append(pkg);
-        sb.append(";");
-        sb.append(CRLF);
-        sb.append(CRLF);
-
-        sb.append("public interface ");
-        sb.append(ENUM_CLASS);
-        sb.append(" {");
-        sb.append(CRLF);
-        sb.append(CRLF);
-        sb.append("    String value();");
-        sb.append(CRLF);
-        sb.append(CRLF);
-        sb.append("}");
-
-        writeFile(dirName + "/" + ENUM_CLASS + ".java", sb);
     }
 
-    public void createEventEnum(Map<String, Type> values) throws Exception {
-        String pkg = this.pkg;
-        String dirName = baseDir + "/" + pkg.replace(".", "/");
-        File dir = new File(dirName);
+    /**
+     * 先写入临时文件再重命名, 并行构建的模块不会读到写了一半的缓存
+     */
+    private void writeModelCache(File file, Document document) throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
         if (!dir.exists()) {
             dir.mkdirs();
         }
-        String enumClassName = "CDPEventType";
-        StringBuffer sb = new StringBuffer();
-        sb.append("package ");
-        sb.append(pkg);
-        sb.append(";");
-        sb.append(CRLF);
-        sb.append(CRLF);
-
-        sb.append("public enum ");
-        sb.append(enumClassName);
-        sb.append(" {");
-        sb.append(CRLF);
-        sb.append(CRLF);
-        for(Map.Entry<String, Type> entry : values.entrySet()) {
-            Type clazz = entry.getValue();
-            String name = entry.getKey().toUpperCase().replaceAll("[^a-zA-Z0-9_]", "_");
-            if (clazz != null && StringUtils.isNotEmpty(clazz.description)) {
-                sb.append("    /**");
-                sb.append(CRLF);
-                sb.append("    * ");
-                sb.append(clazz.description.replaceAll("(\r\n|\n|\r)", " "));
-                sb.append(CRLF);
-                sb.append("    * @see ");
-                sb.append(clazz.getPackage() + "." + clazz.id);
-                sb.append(CRLF);
-                sb.append("    */");
-                sb.append(CRLF);
+        File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+        try {
+            try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 64 * 1024))) {
+                out.writeObject(document);
             }
-            sb.append("    ");
-            sb.append(name);
-            sb.append("(\"");
-            sb.append(entry.getKey());
-            sb.append("\"");
-            sb.append(", ");
-            if (clazz != null) {
-                sb.append(clazz.getPackage() + "." + clazz.id);
-                sb.append(".class");
-            } else {
-                sb.append("null");
+            try {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
             }
-            sb.append(")");
-            sb.append(",");
-            sb.append(CRLF);
-            sb.append(CRLF);
+            getLog().info("write protocol model cache " + file);
+        } finally {
+            tmp.delete();
         }
-        sb.append("    ;");
-        sb.append(CRLF);
-        sb.append(CRLF);
-        sb.append("    private String name;");
-        sb.append(CRLF);
-        sb.append(CRLF);
-        sb.append("    private Class clazz;");
-        sb.append(CRLF);
-        sb.append(CRLF);
-        sb.append("    ");
-        sb.append(enumClassName);
-        sb.append("(String name, Class clazz) {");
-        sb.append(CRLF);
-        sb.append("        this.name = name;");
-        sb.append(CRLF);
-        sb.append("        this.clazz = clazz;");
-        sb.append(CRLF);
-        sb.append("    }");
-        sb.append(CRLF);
-        sb.append(CRLF);
-        sb.append("    public String getName() {");
-        sb.append(CRLF);
-        sb.append("        return name;");
-        sb.append(CRLF);
-        sb.append("    }");
-        sb.append(CRLF);
-        sb.append(CRLF);
-        sb.append("    public Class getClazz() {");
-        sb.append(CRLF);
-        sb.append("        return clazz;");
-        sb.append(CRLF);
-        sb.append("    }");
-        sb.append(CRLF);
-        sb.append(CRLF);
-        sb.append("    public static ");
-        sb.append(enumClassName);
-        sb.append(" findByName(String name) {");
-        sb.append(CRLF);
-        sb.append("        for(");
-        sb.append(enumClassName);
-        sb.append(" val : values()) {");
-        sb.append(CRLF);
-        sb.append("            if (val.name.equals(name)) return val;");
-        sb.append(CRLF);
-        sb.append("        }");
-        sb.append(CRLF);
-        sb.append("        return null;");
-        sb.append(CRLF);
-        sb.append("    }");
-        sb.append(CRLF);
-        sb.append("}");
+    }
 
-        writeFile(dirName + "/" + enumClassName + ".java", sb);
+    private int parallelism() {
+        return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
     }
 
-    public Map<String, Type> createEvent(Domain domain) throws Exception {
-        if (isEmpty(domain.events)) {
-            return new HashMap<>();
+    /**
+     * 生成所有domain的type, command和event, typeMap建立完成后各domain之间互不依赖, 可以并行生成
+     * @return 按domain顺序合并的事件, 保证生成的CDPEventType顺序稳定
+     */
+    private Map<String, Type> createDomains(List<Domain> domains) throws Exception {
+        Map<String, Type> events = new LinkedHashMap<>();
+        int parallelism = Math.min(parallelism(), domains.size());
+        if (parallelism <= 1) {
+            for (Domain domain : domains) {
+                events.putAll(createDomain(domain));
+            }
+            return events;
         }
-        //生成class
-        Map<String, Type> values = new LinkedHashMap<>();
-        for(Event event : domain.events) {
-            if (isNotEmpty(event.parameters)) {
-                Type param = new Type();
-                param.id = StringUtils.removeEndIgnoreCase(StringUtils.capitalize(event.name), "event") + "Event";
-                param.description = event.description;
-                param.properties = event.parameters;
-                param.type = TypeType.OBJECT;
-                param.domain = domain;
-                createType(domain, param);
-                values.put(domain.domain + "." + event.name, param);
-            } else {
-                values.put(domain.domain + "." + event.name, null);
+        getLog().info("generate with " + parallelism + " threads");
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<ForkJoinTask<Map<String, Type>>> tasks = new ArrayList<>(domains.size());
+            for (Domain domain : domains) {
+                tasks.add(pool.submit(() -> createDomain(domain)));
             }
+            for (ForkJoinTask<Map<String, Type>> task : tasks) {
+                events.putAll(get(task));
+            }
+        } finally {
+            pool.shutdownNow();
         }
-        return values;
+        return events;
     }
 
-    public void createCommand(Domain domain) throws Exception {
-        String pkg = this.pkg + ".domain";
-        String dirName = baseDir + "/" + pkg.replace(".", "/");
-        File dir = new File(dirName);
-        if (!dir.exists()) {
+    private static <T> T get(ForkJoinTask<T> task) throws Exception {
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+    }
+
+    private Map<String, Type> createDomain(Domain domain) throws Exception {
+        String previous = metrics.enterDomain(domain.domain);
+        try {
+            Map<Object, String> enums = new HashMap<>();
+            if (dedupeTypes && isNotEmpty(domain.types)) {
+                for (Type type : domain.types) {
+                    if (type.isEnum()) {
+                        enums.putIfAbsent(type.enums, type.getPackage() + "." + type.id);
+                    }
+                }
+            }
+            inlineEnums.put(domain.domain, enums);
+            sharedTypes.put(domain.domain, dedupeTypes ? findSharedTypes(domain, enums) : new HashMap<>());
+            //生成type
+            long start = System.nanoTime();
+            if (isNotEmpty(domain.types)) {
+                for (Type type : domain.types) {
+                    createType(domain, type);
+                }
+            }
+            metrics.add("types", start);
+            //生成接口
+            start = System.nanoTime();
+            if (isNotEmpty(domain.commands)) {
+                createCommand(domain);
+            }
+            metrics.add("commands", start);
+            //生成事件
+            start = System.nanoTime();
+            Map<String, Type> events = createEvent(domain);
+            if (listeners && !events.isEmpty()) {
+                createListener(domain, events);
+            }
+            metrics.add("events", start);
+            return events;
+        } finally {
+            metrics.exitDomain(previous);
+        }
+    }
+
+    /**
+     * 按includes和excludes筛选command和event, type只保留被它们直接或间接引用的部分, 没有任何内容的domain不再生成
+     */
+    private List<Domain> shakeDomains(List<Domain> domains) {
+        Set<String> usedPatterns = new HashSet<>();
+        Set<Type> reachable = Collections.newSetFromMap(new IdentityHashMap<>());
+        Map<String, Domain> domainMap = new HashMap<>();
+        for (Domain domain : domains) {
+            domainMap.put(domain.domain, domain);
+        }
+        for (Domain domain : domains) {
+            List<Command> commands = new ArrayList<>();
+            if (isNotEmpty(domain.commands)) {
+                for (Command command : domain.commands) {
+                    if (isSelected(domain.domain, command.name, usedPatterns)) {
+                        commands.add(command);
+                        markTypes(domain, command.parameters, reachable);
+                        markTypes(domain, command.returns, reachable);
+                    }
+                }
+            }
+            domain.commands = commands;
+            List<Event> events = new ArrayList<>();
+            if (isNotEmpty(domain.events)) {
+                for (Event event : domain.events) {
+                    if (isSelected(domain.domain, event.name, usedPatterns)) {
+                        events.add(event);
+                        markTypes(domain, event.parameters, reachable);
+                    }
+                }
+            }
+            domain.events = events;
+        }
+        for (String pattern : includes != null ? includes : Collections.<String>emptyList()) {
+            if (!usedPatterns.contains(pattern)) {
+                getLog().warn("include pattern matches nothing: " + pattern);
+            }
+        }
+        List<Domain> result = new ArrayList<>();
+        int typeCount = 0;
+        int keptCount = 0;
+        for (Domain domain : domains) {
+            List<Type> types = new ArrayList<>();
+            if (isNotEmpty(domain.types)) {
+                typeCount += domain.types.size();
+                for (Type type : domain.types) {
+                    if (reachable.contains(type)) {
+                        types.add(type);
+                    }
+                }
+            }
+            domain.types = types;
+            keptCount += types.size();
+            if (isNotEmpty(domain.commands) || isNotEmpty(domain.events) || isNotEmpty(domain.types)) {
+                result.add(domain);
+                checkDependencies(domain, domainMap);
+            }
+        }
+        getLog().info(String.format("tree shaking kept %d of %d domains, %d of %d types", result.size(), domains.size(), keptCount, typeCount));
+        return result;
+    }
+
+    private boolean isSelected(String domain, String name, Set<String> usedPatterns) {
+        boolean included = isEmpty(includes) || matches(includes, domain, name, usedPatterns);
+        return included && (isEmpty(excludes) || !matches(excludes, domain, name, usedPatterns));
+    }
+
+    /**
+     * 支持的格式: Domain, Domain.*, Domain.name
+     */
+    private static boolean matches(List<String> patterns, String domain, String name, Set<String> usedPatterns) {
+        for (String pattern : patterns) {
+            if (pattern.equals(domain) || pattern.equals(domain + ".*") || pattern.equals(domain + "." + name)) {
+                usedPatterns.add(pattern);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 把所有$ref链接到引用的type, 并检查类型定义, 错误信息包含出错的位置, 如DOM.querySelector.parameters.nodeId
+     */
+    private void resolveTypes(List<Domain> domains) throws MojoFailureException {
+        for (Domain domain : domains) {
+            if (isNotEmpty(domain.types)) {
+                for (Type type : domain.types) {
+                    type.className = type.getClassName().intern();
+                    resolveType(domain, type, type.qualifiedName);
+                }
+            }
+            if (isNotEmpty(domain.commands)) {
+                for (Command command : domain.commands) {
+                    resolveTypes(domain, command.parameters, domain.domain + "." + command.name + ".parameters");
+                    resolveTypes(domain, command.returns, domain.domain + "." + command.name + ".returns");
+                }
+            }
+            if (isNotEmpty(domain.events)) {
+                for (Event event : domain.events) {
+                    resolveTypes(domain, event.parameters, domain.domain + "." + event.name + ".parameters");
+                }
+            }
+        }
+        //只经过$ref和items的引用链会让getType无限递归, 具名的类和枚举到此为止
+        Set<Type> checked = new HashSet<>();
+        for (Domain domain : domains) {
+            if (isNotEmpty(domain.types)) {
+                for (Type type : domain.types) {
+                    checkCycle(type, new ArrayList<>(), checked);
+                }
+            }
+        }
+    }
+
+    private void resolveTypes(Domain domain, List<Type> props, String location) throws MojoFailureException {
+        if (isNotEmpty(props)) {
+            for (Type prop : props) {
+                resolveType(domain, prop, location + "." + prop.name);
+            }
+        }
+    }
+
+    private void resolveType(Domain domain, Type prop, String location) throws MojoFailureException {
+        if (StringUtils.isNotEmpty(prop.ref)) {
+            prop.target = typeMap.get(prop.ref.indexOf('.') > 0 ? prop.ref : domain.domain + "." + prop.ref);
+            if (prop.target == null) {
+                throw new MojoFailureException("unknown type reference " + prop.ref + " at " + location);
+            }
+            return;
+        }
+        if (prop.type == null) {
+            throw new MojoFailureException("unknown type at " + location);
+        }
+        if (prop.type == TypeType.ARRAY) {
+            if (prop.items == null) {
+                throw new MojoFailureException("array without items at " + location);
+            }
+            resolveType(domain, prop.items, location + "[]");
+        }
+        resolveTypes(domain, prop.properties, location);
+    }
+
+    private static void checkCycle(Type type, List<Type> path, Set<Type> checked) throws MojoFailureException {
+        if (checked.contains(type) || (StringUtils.isNotEmpty(type.id) && (type.isObject() || type.isEnum()))) {
+            return;
+        }
+        if (path.contains(type)) {
+            StringBuilder sb = new StringBuilder("circular type reference ");
+            for (Type item : path.subList(path.indexOf(type), path.size())) {
+                sb.append(item.qualifiedName != null ? item.qualifiedName : "[]").append(" -> ");
+            }
+            throw new MojoFailureException(sb.append(type.qualifiedName).toString());
+        }
+        path.add(type);
+        if (type.target != null) {
+            checkCycle(type.target, path, checked);
+        } else if (type.items != null) {
+            checkCycle(type.items, path, checked);
+        }
+        path.remove(path.size() - 1);
+        checked.add(type);
+    }
+
+    /**
+     * 标记属性通过$ref引用的type, 引用的type再继续标记它的属性
+     */
+    private void markTypes(Domain domain, List<Type> props, Set<Type> reachable) {
+        if (isNotEmpty(props)) {
+            for (Type prop : props) {
+                markType(domain, prop, reachable);
+            }
+        }
+    }
+
+    private void markType(Domain domain, Type prop, Set<Type> reachable) {
+        if (prop == null) {
+            return;
+        }
+        if (prop.target != null) {
+            if (reachable.add(prop.target)) {
+                markType(prop.target.domain, prop.target, reachable);
+            }
+            return;
+        }
+        markType(domain, prop.items, reachable);
+        markTypes(domain, prop.properties, reachable);
+    }
+
+    /**
+     * 保留的domain引用了dependencies之外的domain时输出调试日志, 协议中的dependencies并不完整, 不作为错误
+     */
+    private void checkDependencies(Domain domain, Map<String, Domain> domainMap) {
+        Set<String> closure = new HashSet<>();
+        Deque<String> queue = new ArrayDeque<>();
+        queue.add(domain.domain);
+        while (!queue.isEmpty()) {
+            String name = queue.poll();
+            Domain dependency = domainMap.get(name);
+            if (closure.add(name) && dependency != null && dependency.dependencies != null) {
+                queue.addAll(dependency.dependencies);
+            }
+        }
+        Set<String> referenced = new TreeSet<>();
+        for (Command command : domain.commands) {
+            collectRefs(command.parameters, referenced);
+            collectRefs(command.returns, referenced);
+        }
+        for (Event event : domain.events) {
+            collectRefs(event.parameters, referenced);
+        }
+        collectRefs(domain.types, referenced);
+        referenced.removeAll(closure);
+        if (!referenced.isEmpty()) {
+            getLog().debug(domain.domain + " references " + referenced + " outside of its dependencies");
+        }
+    }
+
+    private static void collectRefs(List<Type> props, Set<String> domains) {
+        if (isNotEmpty(props)) {
+            for (Type prop : props) {
+                collectRefs(prop, domains);
+            }
+        }
+    }
+
+    private static void collectRefs(Type prop, Set<String> domains) {
+        if (prop == null) {
+            return;
+        }
+        if (prop.target != null) {
+            domains.add(prop.target.domain.domain);
+        }
+        collectRefs(prop.items, domains);
+        collectRefs(prop.properties, domains);
+    }
+
+    private static boolean isNotEmpty(Collection collection) {
+        return collection != null && collection.size() > 0;
+    }
+
+    private static boolean isEmpty(Collection collection) {
+        return !isNotEmpty(collection);
+    }
+
+    private void writeFile(String filename, StringBuffer sb) throws Exception {
+        long start = System.nanoTime();
+        File java = new File(filename);
+        byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+        metrics.file(bytes.length);
+        String key = manifestKey(java);
+        String hash = hash(bytes);
+        currentManifest.put(key, hash);
+        if (srcjar && isPrecompileSource(java)) {
+            memorySources.put(key, bytes);
+            //源码不写出文件, 只按清单中的hash判断内容是否变化
+            if (hash.equals(previousManifest.get(key))) {
+                unchangedCount.incrementAndGet();
+            } else {
+                writtenCount.incrementAndGet();
+            }
+            metrics.add("io", start);
+            return;
+        }
+        if (incremental && isUnchanged(java, bytes, hash.equals(previousManifest.get(key)))) {
+            unchangedCount.incrementAndGet();
+            metrics.add("io", start);
+            return;
+        }
+        if (getLog().isDebugEnabled()) {
+            getLog().debug("write file:" + filename);
+        }
+        File dir = java.getParentFile();
+        if (!createdDirs.contains(dir.getPath())) {
+            //其它线程可能正在创建同一目录, mkdirs失败时以isDirectory为准, 确认存在后才记入createdDirs
+            if (!dir.mkdirs() && !dir.isDirectory()) {
+                throw new IOException("can not create directory " + dir);
+            }
+            createdDirs.add(dir.getPath());
+        }
+        if (java.exists()) {
+            java.delete();
+        }
+        java.createNewFile();
+        OutputStream os = new FileOutputStream(java);
+        os.write(bytes);
+        os.flush();
+        os.close();
+        writtenCount.incrementAndGet();
+        metrics.add("io", start);
+    }
+
+    /**
+     * 包对应的源码目录, 预编译模式下domain包以外的类写入预编译源码目录
+     */
+    private String sourceDir(String pkg) {
+        File root = precompile && !pkg.equals(this.pkg + ".domain") ? precompileSourceDir : baseDir;
+        return root + "/" + pkg.replace(".", "/");
+    }
+
+    private boolean isPrecompileSource(File java) {
+        return java.toPath().toAbsolutePath().normalize().startsWith(precompileSourceDir.toPath().toAbsolutePath().normalize());
+    }
+
+    /**
+     * 在插件内编译预编译目录中的源码并打包源码jar, 源码及classpath未变化时跳过
+     */
+    private void precompileSources() throws Exception {
+        Path sourceRoot = precompileSourceDir.toPath().toAbsolutePath().normalize();
+        Path baseRoot = baseDir.toPath().toAbsolutePath().normalize();
+        //本次生成的预编译源码, 及上次生成而本次不再生成的源码
+        SortedMap<String, String> sources = new TreeMap<>();
+        for (Map.Entry<String, String> entry : currentManifest.entrySet()) {
+            Path path = baseRoot.resolve(entry.getKey()).normalize();
+            if (path.startsWith(sourceRoot)) {
+                sources.put(sourceRoot.relativize(path).toString().replace(File.separatorChar, '/'), entry.getValue());
+            }
+        }
+        for (String key : previousManifest.keySet()) {
+            Path path = baseRoot.resolve(key).normalize();
+            if (!currentManifest.containsKey(key) && path.startsWith(sourceRoot)) {
+                deleteClassFiles(sourceRoot.relativize(path).toString().replace(File.separatorChar, '/'));
+            }
+        }
+        List<String> options = new ArrayList<>();
+        options.add("-d");
+        options.add(classesDirectory.getAbsolutePath());
+        options.add("-encoding");
+        options.add("UTF-8");
+        options.add("-nowarn");
+        if (isNotEmpty(classpathElements)) {
+            options.add("-classpath");
+            options.add(String.join(File.pathSeparator, classpathElements));
+        }
+        if (StringUtils.isNotEmpty(target)) {
+            if (javax.lang.model.SourceVersion.latest().ordinal() > 8) {
+                options.add("--release");
+                options.add(target.startsWith("1.") ? target.substring(2) : target);
+            } else {
+                options.add("-source");
+                options.add(target);
+                options.add("-target");
+                options.add(target);
+            }
+        }
+        StringBuilder stamp = new StringBuilder();
+        stamp.append(options).append('\n');
+        for (Map.Entry<String, String> entry : sources.entrySet()) {
+            stamp.append(entry.getValue()).append(' ').append(entry.getKey()).append('\n');
+        }
+        String stampHash = hash(stamp.toString().getBytes(StandardCharsets.UTF_8));
+        File stampFile = new File(precompileSourceDir.getParentFile(), "precompile.stamp");
+        //stamp记录源码及编译参数的hash, 以及全部class文件和源码jar的大小及修改时间, 任何一个输出变化都重新编译
+        if (stampFile.isFile() && (stampHash + "\n" + outputStamp(sources.keySet()))
+                .equals(new String(Files.readAllBytes(stampFile.toPath()), StandardCharsets.UTF_8))) {
+            getLog().info("precompiled classes are up to date");
+            attachClassesDirectory();
+            return;
+        }
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new MojoExecutionException("precompile requires maven running on a JDK");
+        }
+        classesDirectory.mkdirs();
+        getLog().info("precompile " + sources.size() + " classes to " + classesDirectory);
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        //jar条目及对应的源码内容
+        Map<String, byte[]> contents = new LinkedHashMap<>();
+        for (String source : sources.keySet()) {
+            byte[] bytes = srcjar ? memorySources.get(baseRoot.relativize(sourceRoot.resolve(source)).toString().replace(File.separatorChar, '/'))
+                    : Files.readAllBytes(sourceRoot.resolve(source));
+            contents.put(source, bytes);
+        }
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8)) {
+            List<JavaFileObject> files = new ArrayList<>(sources.size());
+            for (Map.Entry<String, byte[]> entry : contents.entrySet()) {
+                files.add(new MemorySource(entry.getKey(), entry.getValue()));
+            }
+            Boolean success = compiler.getTask(null, fileManager, diagnostics, options, null, files).call();
+            if (!Boolean.TRUE.equals(success)) {
+                StringBuilder sb = new StringBuilder("precompile failed");
+                for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                    if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                        sb.append("\n").append(diagnostic.getSource() != null ? diagnostic.getSource().getName() : "")
+                                .append(":").append(diagnostic.getLineNumber()).append(" ").append(diagnostic.getMessage(null));
+                    }
+                }
+                throw new MojoExecutionException(sb.toString());
+            }
+        }
+        writeJar(sourcesJar, contents);
+        Files.write(stampFile.toPath(), (stampHash + "\n" + outputStamp(sources.keySet())).getBytes(StandardCharsets.UTF_8));
+        attachClassesDirectory();
+    }
+
+    /**
+     * 预编译输出的摘要: 每个源码对应的class文件(包括内部类)及源码jar的路径, 大小和修改时间
+     */
+    private String outputStamp(Collection<String> sources) {
+        StringBuilder sb = new StringBuilder();
+        Map<File, File[]> listed = new HashMap<>();
+        for (String source : sources) {
+            for (File file : classFiles(classesDirectory, source, listed)) {
+                sb.append(file.length()).append(' ').append(file.lastModified()).append(' ')
+                        .append(classesDirectory.toPath().relativize(file.toPath()).toString().replace(File.separatorChar, '/')).append('\n');
+            }
+        }
+        sb.append(sourcesJar.length()).append(' ').append(sourcesJar.lastModified()).append(' ').append(sourcesJar.getName()).append('\n');
+        return sb.toString();
+    }
+
+    /**
+     * classesDirectory作为只包含class文件的资源目录加入工程, 由process-resources复制到工程的输出目录,
+     * 工程编译domain类及打包时都能使用预编译的类
+     */
+    private void attachClassesDirectory() {
+        if (project == null || classesDirectory.getAbsoluteFile().equals(new File(project.getBuild().getOutputDirectory()).getAbsoluteFile())) {
+            return;
+        }
+        String directory = classesDirectory.getAbsolutePath();
+        for (Resource resource : project.getResources()) {
+            if (directory.equals(resource.getDirectory())) {
+                return;
+            }
+        }
+        Resource resource = new Resource();
+        resource.setDirectory(directory);
+        resource.addInclude("**/*.class");
+        project.addResource(resource);
+    }
+
+    /**
+     * 删除已经不再生成的类对应的class文件, 包括内部类, 已经复制到工程输出目录中的也一起删除
+     */
+    private void deleteClassFiles(String source) {
+        List<File> roots = new ArrayList<>();
+        roots.add(classesDirectory);
+        if (project != null) {
+            roots.add(new File(project.getBuild().getOutputDirectory()));
+        }
+        for (File root : roots) {
+            for (File file : classFiles(root, source, new HashMap<>())) {
+                if (file.delete() && getLog().isDebugEnabled()) {
+                    getLog().debug("delete stale class:" + file);
+                }
+            }
+        }
+    }
+
+    /**
+     * 源码在root下对应的class文件, 包括内部类, 按文件名排序, listed缓存已经列出的目录
+     */
+    private static List<File> classFiles(File root, String source, Map<File, File[]> listed) {
+        File dir = new File(root, source).getParentFile();
+        String name = StringUtils.removeEnd(new File(source).getName(), ".java");
+        File[] files = listed.computeIfAbsent(dir, d -> {
+            File[] all = d.listFiles();
+            if (all != null) {
+                Arrays.sort(all);
+            }
+            return all;
+        });
+        List<File> matched = new ArrayList<>();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().equals(name + ".class") || file.getName().startsWith(name + "$")) {
+                    matched.add(file);
+                }
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * 按相对路径写入jar, 条目使用固定的时间保证内容可重复
+     */
+    private static void writeJar(File jar, Map<String, byte[]> entries) throws IOException {
+        File dir = jar.getAbsoluteFile().getParentFile();
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+        File tmp = File.createTempFile(jar.getName(), ".tmp", dir);
+        try {
+            try (JarOutputStream out = new JarOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 64 * 1024))) {
+                for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                    JarEntry jarEntry = new JarEntry(entry.getKey());
+                    jarEntry.setTime(0L);
+                    out.putNextEntry(jarEntry);
+                    out.write(entry.getValue());
+                    out.closeEntry();
+                }
+            }
+            Files.move(tmp.toPath(), jar.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    private static boolean isUnchanged(File java, byte[] bytes, boolean sameHash) throws IOException {
+        if (!java.exists() || java.length() != bytes.length) {
+            return false;
+        }
+        //清单中的hash一致时不再读取文件内容比较
+        return sameHash || Arrays.equals(Files.readAllBytes(java.toPath()), bytes);
+    }
+
+    private String manifestKey(File java) {
+        return baseDir.toPath().toAbsolutePath().normalize()
+                .relativize(java.toPath().toAbsolutePath().normalize())
+                .toString().replace(File.separatorChar, '/');
+    }
+
+    private static String hash(byte[] bytes) throws Exception {
+        return hex(MessageDigest.getInstance("SHA-256").digest(bytes));
+    }
+
+    private static String hex(byte[] digest) {
+        StringBuilder sb = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 清单文件第一行记录的baseDir
+     */
+    private String manifestRoot() {
+        return baseDir.toPath().toAbsolutePath().normalize().toString();
+    }
+
+    private Map<String, String> readManifest(File file) throws IOException {
+        Map<String, String> manifest = new HashMap<>();
+        if (file == null || !file.isFile()) {
+            return manifest;
+        }
+        for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+            if (line.startsWith(MANIFEST_ROOT)) {
+                previousManifestRoot = line.substring(MANIFEST_ROOT.length());
+                continue;
+            }
+            int idx = line.indexOf(' ');
+            if (idx > 0) {
+                manifest.put(line.substring(idx + 1), line.substring(0, idx));
+            }
+        }
+        return manifest;
+    }
+
+    private void writeManifest(File file) throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.exists()) {
             dir.mkdirs();
         }
+        List<String> lines = new ArrayList<>(currentManifest.size() + 1);
+        lines.add(MANIFEST_ROOT + manifestRoot());
+        for (Map.Entry<String, String> entry : new TreeMap<>(currentManifest).entrySet()) {
+            lines.add(entry.getValue() + " " + entry.getKey());
+        }
+        Files.write(file.toPath(), lines, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 删除上次生成, 但本次协议中已经不存在的文件
+     */
+    private int deleteStaleFiles() {
+        int count = 0;
+        for (String key : previousManifest.keySet()) {
+            if (currentManifest.containsKey(key)) {
+                continue;
+            }
+            File stale = baseDir.toPath().resolve(key).normalize().toFile();
+            if (stale.isFile() && stale.delete()) {
+                if (getLog().isDebugEnabled()) {
+                    getLog().debug("delete stale file:" + stale);
+                }
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void createEnumInterface() throws Exception {
+        String pkg = this.pkg;
+        String dirName = sourceDir(pkg);
+        StringBuffer sb = new StringBuffer();
+        sb.append("package ");
+        sb.append(pkg);
+        sb.append(";");
+        sb.append(CRLF);
+        sb.append(CRLF);
+
+        sb.append("public interface ");
+        sb.append(ENUM_CLASS);
+        sb.append(" {");
+        sb.append(CRLF);
+        sb.append(CRLF);
+        sb.append("    String value();");
+        sb.append(CRLF);
+        sb.append(CRLF);
+        sb.append("}");
+
+        writeFile(dirName + "/" + ENUM_CLASS + ".java", sb);
+    }
+
+    /**
+     * 生成名称查找使用的hash及比较方法, 供CDPEventType和枚举的常量时间查找使用
+     */
+    private void createNamesClass() throws Exception {
+        String pkg = this.pkg;
+        String dirName = sourceDir(pkg);
+        StringBuffer sb = new StringBuffer();
+        sb.append("package ");
+        sb.append(pkg);
+        sb.append(";");
+        sb.append(CRLF);
+        sb.append(CRLF);
+        sb.append("/**");
+        sb.append(CRLF);
+        sb.append("* hash and compare helpers for the generated name lookup tables.");
+        sb.append(CRLF);
+        sb.append("* hash(CharSequence) equals String.hashCode, byte ranges are compared as ASCII, which covers every protocol name.");
+        sb.append(CRLF);
+        sb.append("*/");
+        sb.append(CRLF);
+        sb.append("public final class ");
+        sb.append(NAMES_CLASS);
+        sb.append(" {");
+        sb.append(CRLF);
+        sb.append(CRLF);
+        sb.append("    private ");
+        sb.append(NAMES_CLASS);
+        sb.append("() {");
+        sb.append(CRLF);
+        sb.append("    }");
+        sb.append(CRLF);
+        sb.append(CRLF);
+        sb.append("    public static int hash(CharSequence name) {");
+        sb.append(CRLF);
+        sb.append("        if (name instanceof String) {");
+        sb.append(CRLF);
+        sb.append("            return spread(name.hashCode());");
+        sb.append(CRLF);
+        sb.append("        }");
+        sb.append(CRLF);
+        sb.append("        int h = 0;");
+        sb.append(CRLF);
+        sb.append("        for (int i = 0, len = name.length(); i < len; i++) {");
+        sb.append(CRLF);
+        sb.append("            h = 31 * h + name.charAt(i);");
+        sb.append(CRLF);
+        sb.append("        }");
+        sb.append(CRLF);
+        sb.append("        return spread(h);");
+        sb.append(CRLF);
+        sb.append("    }");
+        sb.append(CRLF);
+        sb.append(CRLF);
+        sb.append("    public static int hash(byte[] bytes, int offset, int length) {");
+        sb.append(CRLF);
+        sb.append("        int h = 0;");
+        sb.append(CRLF);
+        sb.append("        for (int i = offset, end = offset + length; i < end; i++) {");
+        sb.append(CRLF);
+        sb.append("            h = 31 * h + (bytes[i] & 0xFF);");
+        sb.append(CRLF);
+        sb.append("        }");
+        sb.append(CRLF);
+        sb.append("        return spread(h);");
+        sb.append(CRLF);
+        sb.append("    }");
+        sb.append(CRLF);
+        sb.append(CRLF);
+        sb.append("    public static boolean equals(String name, CharSequence other) {");
+        sb.append(CRLF);
+        sb.append("        if (other instanceof String) {");
+        sb.append(CRLF);
+        sb.append("            return name.equals(other);");
+        sb.append(CRLF);
+        sb.append("        }");
+        sb.append(CRLF);
+        sb.append("        int len = name.length();");
+        sb.append(CRLF);
+        sb.append("        if (len != other.length()) {");
+        sb.append(CRLF);
+        sb.append("            return false;");
+        sb.append(CRLF);
+        sb.append("        }");
+        sb.append(CRLF);
+        sb.append("        for (int i = 0; i < len; i++) {");
+        sb.append(CRLF);
+        sb.append("            if (name.charAt(i) != other.charAt(i)) return false;");
+        sb.append(CRLF);
+        sb.append("        }");
+        sb.append(CRLF);
+        sb.append("        return true;");
+        sb.append(CRLF);
+        sb.append("    }");
+        sb.append(CRLF);
+        sb.append(CRLF);
+        sb.append("    public static boolean equals(String name, byte[] bytes, int offset, int length) {");
+        sb.append(CRLF);
+        sb.append("        if (name.length() != length) {");
+        sb.append(CRLF);
+        sb.append("            return false;");
+        sb.append(CRLF);
+        sb.append("        }");
+        sb.append(CRLF);
+        sb.append("        for (int i = 0; i < length; i++) {");
+        sb.append(CRLF);
+        sb.append("            if (name.charAt(i) != (bytes[offset + i] & 0xFF)) return false;");
+        sb.append(CRLF);
+        sb.append("        }");
+        sb.append(CRLF);
+        sb.append("        return true;");
+        sb.append(CRLF);
+        sb.append("    }");
+        sb.append(CRLF);
+        sb.append(CRLF);
+        sb.append("    private static int spread(int h) {");
+        sb.append(CRLF);
+        sb.append("        return h ^ (h >>> 16);");
+        sb.append(CRLF);
+        sb.append("    }");
+        sb.append(CRLF);
+        sb.append("}");
+
+        writeFile(dirName + "/" + NAMES_CLASS + ".java", sb);
+    }
+
+    /**
+     * 生成基于开放寻址hash表的常量时间查找方法, 包括String, CharSequence及字节数组三个重载
+     * @param className 枚举类名
+     * @param field 参与查找的字段名
+     * @param method 查找方法名
+     * @param count 枚举值个数
+     */
+    private StringBuffer createLookup(String className, String field, String method, int count) {
+        int size = 2;
+        while (size < count * 2) {
+            size <<= 1;
+        }
+        String names = this.pkg + "." + NAMES_CLASS;
+        StringBuffer sb = new StringBuffer();
+        //枚举常量名都是大写, 字段名包含小写字母不会和常量重名
+        sb.append("    private static final ");
+        sb.append(className);
+        sb.append("[] lookupTable = new ");
+        sb.append(className);
+        sb.append("[");
+        sb.append(size);
+        sb.append("];");
+        sb.append(CRLF);
+        sb.append(CRLF);
+        sb.append("    static {");
+        sb.append(CRLF);
+        sb.append("        for(");
+        sb.append(className);
+        sb.append(" val : values()) {");
+        sb.append(CRLF);
+        sb.append("            int i = ");
+        sb.append(names);
+        sb.append(".hash(val.");
+        sb.append(field);
+        sb.append(") & (lookupTable.length - 1);");
+        sb.append(CRLF);
+        sb.append("            while (lookupTable[i] != null) {");
+        sb.append(CRLF);
+        sb.append("                i = (i + 1) & (lookupTable.length - 1);");
+        sb.append(CRLF);
+        sb.append("            }");
+        sb.append(CRLF);
+        sb.append("            lookupTable[i] = val;");
+        sb.append(CRLF);
+        sb.append("        }");
+        sb.append(CRLF);
+        sb.append("    }");
+        sb.append(CRLF);
+        sb.append(CRLF);
+        sb.append("    public static ");
+        sb.append(className);
+        sb.append(" ");
+        sb.append(method);
+        sb.append("(String ");
+        sb.append(field);
+        sb.append(") {");
+        sb.append(CRLF);
+        sb.append("        return ");
+        sb.append(method);
+        sb.append("((CharSequence) ");
+        sb.append(field);
+        sb.append(");");
+        sb.append(CRLF);
+        sb.append("    }");
+        sb.append(CRLF);
+        sb.append(CRLF);
+        sb.append("    public static ");
+        sb.append(className);
+        sb.append(" ");
+        sb.append(method);
+        sb.append("(CharSequence ");
+        sb.append(field);
+        sb.append(") {");
+        sb.append(CRLF);
+        sb.append("        if (");
+        sb.append(field);
+        sb.append(" == null) {");
+        sb.append(CRLF);
+        sb.append("            return null;");
+        sb.append(CRLF);
+        sb.append("        }");
+        sb.append(CRLF);
+        sb.append("        int mask = lookupTable.length - 1;");
+        sb.append(CRLF);
+        sb.append("        for (int i = ");
+        sb.append(names);
+        sb.append(".hash(");
+        sb.append(field);
+        sb.append(") & mask; lookupTable[i] != null; i = (i + 1) & mask) {");
+        sb.append(CRLF);
+        sb.append("            if (");
+        sb.append(names);
+        sb.append(".equals(lookupTable[i].");
+        sb.append(field);
+        sb.append(", ");
+        sb.append(field);
+        sb.append(")) return lookupTable[i];");
+        sb.append(CRLF);
+        sb.append("        }");
+        sb.append(CRLF);
+        sb.append("        return null;");
+        sb.append(CRLF);
+        sb.append("    }");
+        sb.append(CRLF);
+        sb.append(CRLF);
+        sb.append("    public static ");
+        sb.append(className);
+        sb.append(" ");
+        sb.append(method);
+        sb.append("(byte[] bytes, int offset, int length) {");
+        sb.append(CRLF);
+        sb.append("        int mask = lookupTable.length - 1;");
+        sb.append(CRLF);
+        sb.append("        for (int i = ");
+        sb.append(names);
+        sb.append(".hash(bytes, offset, length) & mask; lookupTable[i] != null; i = (i + 1) & mask) {");
+        sb.append(CRLF);
+        sb.append("            if (");
+        sb.append(names);
+        sb.append(".equals(lookupTable[i].");
+        sb.append(field);
+        sb.append(", bytes, offset, length)) return lookupTable[i];");
+        sb.append(CRLF);
+        sb.append("        }");
+        sb.append(CRLF);
+        sb.append("        return null;");
+        sb.append(CRLF);
+        sb.append("    }");
+        sb.append(CRLF);
+        return sb;
+    }
+
+    private static void appendLines(StringBuffer sb, String... lines) {
+        for (String line : lines) {
+            sb.append(line);
+            sb.append(CRLF);
+        }
+    }
+
+    /**
+     * 生成编解码器注册类, 同时提供实体编解码器使用的读取方法
+     */
+    private void createCodecRegistry() throws Exception {
+        String pkg = this.pkg;
+        String dirName = sourceDir(pkg);
+        StringBuffer sb = new StringBuffer();
+        sb.append("package ");
+        sb.append(pkg);
+        sb.append(";");
+        sb.append(CRLF);
+        sb.append(CRLF);
+        appendLines(sb,
+                "import com.alibaba.fastjson.JSONException;",
+                "import com.alibaba.fastjson.parser.DefaultJSONParser;",
+                "import com.alibaba.fastjson.parser.JSONLexer;",
+                "import com.alibaba.fastjson.parser.JSONLexerBase;",
+                "import com.alibaba.fastjson.parser.JSONToken;",
+                "import com.alibaba.fastjson.parser.ParserConfig;",
+                "import com.alibaba.fastjson.parser.deserializer.EnumDeserializer;",
+                "import com.alibaba.fastjson.parser.deserializer.JavaBeanDeserializer;",
+                "import com.alibaba.fastjson.parser.deserializer.ObjectDeserializer;",
+                "import com.alibaba.fastjson.serializer.JSONSerializer;",
+                "import com.alibaba.fastjson.serializer.ObjectSerializer;",
+                "import com.alibaba.fastjson.serializer.SerializeConfig;",
+                "import com.alibaba.fastjson.util.FieldInfo;",
+                "import com.alibaba.fastjson.util.JavaBeanInfo;",
+                "import com.alibaba.fastjson.util.TypeUtils;",
+                "",
+                "/**",
+                "* registers the generated codecs of every entity and enum, and holds the readers they share.",
+                "*/",
+                "public final class " + CODECS_CLASS + " {",
+                "",
+                "    private " + CODECS_CLASS + "() {",
+                "    }",
+                "",
+                "    public static void register() {",
+                "        register(SerializeConfig.getGlobalInstance(), ParserConfig.getGlobalInstance());",
+                "    }",
+                "",
+                "    public static void register(SerializeConfig serializeConfig, ParserConfig parserConfig) {");
+        for (String clazz : new TreeSet<>(codecClasses)) {
+            sb.append("        put(serializeConfig, parserConfig, ");
+            sb.append(clazz);
+            sb.append(".class, ");
+            sb.append(clazz);
+            sb.append(".Codec.INSTANCE);");
+            sb.append(CRLF);
+        }
+        for (String clazz : new TreeSet<>(codecEnums)) {
+            sb.append("        put(serializeConfig, parserConfig, ");
+            sb.append(clazz);
+            sb.append(".class, new EnumCodec(");
+            sb.append(clazz);
+            sb.append(".values()));");
+            sb.append(CRLF);
+        }
+        appendLines(sb,
+                "    }",
+                "",
+                "    private static <C extends ObjectSerializer & ObjectDeserializer> void put(SerializeConfig serializeConfig, ParserConfig parserConfig, Class<?> clazz, C codec) {",
+                "        serializeConfig.put(clazz, codec);",
+                "        parserConfig.putDeserializer(clazz, codec);",
+                "    }",
+                "",
+                "    public static boolean startObject(DefaultJSONParser parser) {",
+                "        JSONLexer lexer = parser.lexer;",
+                "        if (lexer.token() == JSONToken.NULL) {",
+                "            lexer.nextToken(JSONToken.COMMA);",
+                "            return false;",
+                "        }",
+                "        if (lexer.token() != JSONToken.LBRACE) {",
+                "            throw new JSONException(\"syntax error, expect {, actual \" + lexer.tokenName());",
+                "        }",
+                "        lexer.nextToken(JSONToken.LITERAL_STRING);",
+                "        return true;",
+                "    }",
+                "",
+                "    /**",
+                "    * @return the next field name with the lexer positioned on its value, or null at the end of the object",
+                "    */",
+                "    public static String nextField(DefaultJSONParser parser) {",
+                "        JSONLexer lexer = parser.lexer;",
+                "        if (lexer.token() == JSONToken.COMMA) {",
+                "            lexer.nextToken(JSONToken.LITERAL_STRING);",
+                "        }",
+                "        if (lexer.token() == JSONToken.RBRACE) {",
+                "            lexer.nextToken(JSONToken.COMMA);",
+                "            return null;",
+                "        }",
+                "        if (lexer.token() != JSONToken.LITERAL_STRING) {",
+                "            throw new JSONException(\"syntax error, expect field name, actual \" + lexer.tokenName());",
+                "        }",
+                "        String name = lexer.stringVal();",
+                "        lexer.nextTokenWithColon();",
+                "        return name;",
+                "    }",
+                "",
+                "    public static boolean startArray(DefaultJSONParser parser) {",
+                "        JSONLexer lexer = parser.lexer;",
+                "        if (lexer.token() == JSONToken.NULL) {",
+                "            lexer.nextToken(JSONToken.COMMA);",
+                "            return false;",
+                "        }",
+                "        if (lexer.token() != JSONToken.LBRACKET) {",
+                "            throw new JSONException(\"syntax error, expect [, actual \" + lexer.tokenName());",
+                "        }",
+                "        lexer.nextToken();",
+                "        return true;",
+                "    }",
+                "",
+                "    public static boolean nextElement(DefaultJSONParser parser) {",
+                "        JSONLexer lexer = parser.lexer;",
+                "        if (lexer.token() == JSONToken.COMMA) {",
+                "            lexer.nextToken();",
+                "        }",
+                "        if (lexer.token() == JSONToken.RBRACKET) {",
+                "            lexer.nextToken(JSONToken.COMMA);",
+                "            return false;",
+                "        }",
+                "        return true;",
+                "    }",
+                "",
+                "    private static boolean readNull(JSONLexer lexer) {",
+                "        if (lexer.token() == JSONToken.NULL) {",
+                "            lexer.nextToken(JSONToken.COMMA);",
+                "            return true;",
+                "        }",
+                "        return false;",
+                "    }",
+                "",
+                "    public static String readString(DefaultJSONParser parser) {",
+                "        JSONLexer lexer = parser.lexer;",
+                "        if (lexer.token() == JSONToken.LITERAL_STRING) {",
+                "            String value = lexer.stringVal();",
+                "            lexer.nextToken(JSONToken.COMMA);",
+                "            return value;",
+                "        }",
+                "        if (readNull(lexer)) {",
+                "            return null;",
+                "        }",
+                "        return TypeUtils.castToString(parser.parse());",
+                "    }",
+                "",
+                "    public static Integer readInteger(DefaultJSONParser parser) {",
+                "        if (readNull(parser.lexer)) {",
+                "            return null;",
+                "        }",
+                "        return readIntValue(parser);",
+                "    }",
+                "",
+                "    public static int readIntValue(DefaultJSONParser parser) {",
+                "        JSONLexer lexer = parser.lexer;",
+                "        if (lexer.token() == JSONToken.LITERAL_INT) {",
+                "            int value = lexer.intValue();",
+                "            lexer.nextToken(JSONToken.COMMA);",
+                "            return value;",
+                "        }",
+                "        Integer value = TypeUtils.castToInt(parser.parse());",
+                "        return value != null ? value : 0;",
+                "    }",
+                "",
+                "    public static Boolean readBoolean(DefaultJSONParser parser) {",
+                "        if (readNull(parser.lexer)) {",
+                "            return null;",
+                "        }",
+                "        return readBooleanValue(parser);",
+                "    }",
+                "",
+                "    public static boolean readBooleanValue(DefaultJSONParser parser) {",
+                "        JSONLexer lexer = parser.lexer;",
+                "        if (lexer.token() == JSONToken.TRUE || lexer.token() == JSONToken.FALSE) {",
+                "            boolean value = lexer.token() == JSONToken.TRUE;",
+                "            lexer.nextToken(JSONToken.COMMA);",
+                "            return value;",
+                "        }",
+                "        Boolean value = TypeUtils.castToBoolean(parser.parse());",
+                "        return value != null && value;",
+                "    }",
+                "",
+                "    public static double readDoubleValue(DefaultJSONParser parser) {",
+                "        JSONLexer lexer = parser.lexer;",
+                "        if ((lexer.token() == JSONToken.LITERAL_INT || lexer.token() == JSONToken.LITERAL_FLOAT) && lexer instanceof JSONLexerBase) {",
+                "            double value = ((JSONLexerBase) lexer).doubleValue();",
+                "            lexer.nextToken(JSONToken.COMMA);",
+                "            return value;",
+                "        }",
+                "        Double value = TypeUtils.castToDouble(parser.parse());",
+                "        return value != null ? value : 0D;",
+                "    }",
+                "",
+                "    public static java.math.BigDecimal readBigDecimal(DefaultJSONParser parser) {",
+                "        JSONLexer lexer = parser.lexer;",
+                "        if (lexer.token() == JSONToken.LITERAL_INT || lexer.token() == JSONToken.LITERAL_FLOAT) {",
+                "            java.math.BigDecimal value = lexer.decimalValue();",
+                "            lexer.nextToken(JSONToken.COMMA);",
+                "            return value;",
+                "        }",
+                "        if (readNull(lexer)) {",
+                "            return null;",
+                "        }",
+                "        return TypeUtils.castToBigDecimal(parser.parse());",
+                "    }",
+                "",
+                "    public static java.util.Map<String, Object> readMap(DefaultJSONParser parser) {",
+                "        if (readNull(parser.lexer)) {",
+                "            return null;",
+                "        }",
+                "        return parser.parseObject();",
+                "    }",
+                "",
+                "    /**",
+                "    * base of the generated entity codecs. TypeUtils.castToJavaBean, used by JSONObject.toJavaObject, only accepts a",
+                "    * JavaBeanDeserializer, so every codec is one. the reflective deserializer converting from a map is built on first use.",
+                "    */",
+                "    public abstract static class BeanCodec extends JavaBeanDeserializer implements ObjectSerializer {",
+                "",
+                "        private volatile JavaBeanDeserializer beanDeserializer;",
+                "",
+                "        protected BeanCodec(Class<?> clazz) {",
+                "            super(ParserConfig.getGlobalInstance(), new JavaBeanInfo(clazz, null, null, null, null, null, null, java.util.Collections.<FieldInfo>emptyList()));",
+                "        }",
+                "",
+                "        @Override",
+                "        public Object createInstance(java.util.Map<String, Object> map, ParserConfig config) throws IllegalAccessException, java.lang.reflect.InvocationTargetException {",
+                "            JavaBeanDeserializer deserializer = beanDeserializer;",
+                "            if (deserializer == null) {",
+                "                deserializer = new JavaBeanDeserializer(config, clazz);",
+                "                beanDeserializer = deserializer;",
+                "            }",
+                "            return deserializer.createInstance(map, config);",
+                "        }",
+                "",
+                "        @Override",
+                "        public <T> T deserialze(DefaultJSONParser parser, java.lang.reflect.Type type, Object fieldName, int features) {",
+                "            return deserialze(parser, type, fieldName);",
+                "        }",
+                "",
+                "        @Override",
+                "        public int getFastMatchToken() {",
+                "            return JSONToken.LBRACE;",
+                "        }",
+                "    }",
+                "",
+                "    /**",
+                "    * codec of generated enums, also an enum deserializer so that TypeUtils.castToEnum matches the protocol values",
+                "    */",
+                "    public static final class EnumCodec extends EnumDeserializer implements ObjectSerializer {",
+                "",
+                "        private final java.util.Map<String, " + ENUM_CLASS + "> values;",
+                "",
+                "        private final java.util.Map<Long, Enum> hashes;",
+                "",
+                "        public EnumCodec(" + ENUM_CLASS + "[] values) {",
+                "            super(values.getClass().getComponentType());",
+                "            this.values = new java.util.HashMap<>(values.length * 2);",
+                "            this.hashes = new java.util.HashMap<>(values.length * 2);",
+                "            for (" + ENUM_CLASS + " value : values) {",
+                "                this.values.put(value.value(), value);",
+                "                this.hashes.put(TypeUtils.fnv1a_64(value.value()), (Enum) value);",
+                "            }",
+                "        }",
+                "",
+                "        /**",
+                "        * castToEnum looks up the hash of the string value",
+                "        */",
+                "        @Override",
+                "        public Enum getEnumByHashCode(long hashCode) {",
+                "            return hashes.get(hashCode);",
+                "        }",
+                "",
+                "        @Override",
+                "        public void write(JSONSerializer serializer, Object object, Object fieldName, java.lang.reflect.Type fieldType, int features) {",
+                "            if (object == null) {",
+                "                serializer.out.writeNull();",
+                "            } else {",
+                "                serializer.out.writeString(((" + ENUM_CLASS + ") object).value());",
+                "            }",
+                "        }",
+                "",
+                "        @Override",
+                "        @SuppressWarnings(\"unchecked\")",
+                "        public <T> T deserialze(DefaultJSONParser parser, java.lang.reflect.Type type, Object fieldName) {",
+                "            String value = readString(parser);",
+                "            return value != null ? (T) values.get(value) : null;",
+                "        }",
+                "",
+                "        @Override",
+                "        public int getFastMatchToken() {",
+                "            return JSONToken.LITERAL_STRING;",
+                "        }",
+                "    }",
+                "}");
+
+        writeFile(dirName + "/" + CODECS_CLASS + ".java", sb);
+    }
+
+    /**
+     * 生成事件解码器, 读取method之后直接把params解码为对应的事件类, 不再先解析为JSONObject
+     */
+    private void createEventDecoder(Map<String, Type> events) throws Exception {
+        String pkg = this.pkg;
+        String dirName = sourceDir(pkg);
+        StringBuffer sb = new StringBuffer();
+        sb.append("package ");
+        sb.append(pkg);
+        sb.append(";");
+        sb.append(CRLF);
+        sb.append(CRLF);
+        if (lazyEvents) {
+            appendLines(sb, "import com.alibaba.fastjson.JSON;");
+        }
+        appendLines(sb,
+                "import com.alibaba.fastjson.JSONObject;",
+                "import com.alibaba.fastjson.parser.DefaultJSONParser;",
+                "import com.alibaba.fastjson.parser.ParserConfig;",
+                "",
+                "/**",
+                "* single pass decoder of incoming messages, params of known events are decoded straight into the event class.",
+                "*/",
+                "public final class " + EVENT_DECODER_CLASS + " {",
+                "",
+                "    private " + EVENT_DECODER_CLASS + "() {",
+                "    }",
+                "",
+                "    public static Message decode(String text) {",
+                "        return decode(text, ParserConfig.getGlobalInstance());",
+                "    }",
+                "");
+        if (lazyEvents) {
+            sb.append(createLazyEventDecoder(events));
+        }
+        appendLines(sb,
+                "    public static Message decode(String text, ParserConfig config) {",
+                "        DefaultJSONParser parser = new DefaultJSONParser(text, config);",
+                "        Message message = decode(parser);",
+                "        parser.close();",
+                "        return message;",
+                "    }",
+                "",
+                "    public static Message decode(DefaultJSONParser parser) {",
+                "        if (!" + CODECS_CLASS + ".startObject(parser)) {",
+                "            return null;",
+                "        }",
+                "        Message message = new Message();",
+                "        int paramsStart = -1;",
+                "        int paramsEnd = -1;",
+                "        for (String name = " + CODECS_CLASS + ".nextField(parser); name != null; name = " + CODECS_CLASS + ".nextField(parser)) {",
+                "            switch (name) {",
+                "                case \"method\":",
+                "                    message.method = " + CODECS_CLASS + ".readString(parser);",
+                "                    message.type = " + EVENT_TYPE_CLASS + ".findByName(message.method);",
+                "                    break;",
+                "                case \"params\":",
+                "                    if (message.type == null) {",
+                "                        //method comes after params or the event is unknown",
+                "                        paramsStart = parser.lexer.pos();",
+                "                        message.params = parser.parseObject();",
+                "                        paramsEnd = parser.lexer.pos();",
+                "                    } else if (message.type.getClazz() == null) {",
+                "                        parser.parse();",
+                "                    } else {",
+                "                        message.params = parser.parseObject((java.lang.reflect.Type) message.type.getClazz());",
+                "                    }",
+                "                    break;",
+                "                case \"id\":",
+                "                    message.id = " + CODECS_CLASS + ".readInteger(parser);",
+                "                    break;",
+                "                case \"sessionId\":",
+                "                    message.sessionId = " + CODECS_CLASS + ".readString(parser);",
+                "                    break;",
+                "                case \"result\":",
+                "                    message.result = parser.parseObject();",
+                "                    break;",
+                "                case \"error\":",
+                "                    message.error = parser.parseObject();",
+                "                    break;",
+                "                default:",
+                "                    parser.parse();",
+                "            }",
+                "        }",
+                "        if (message.type != null && message.type.getClazz() != null && message.params instanceof JSONObject) {",
+                "            if (parser.input instanceof String) {",
+                "                //decode the params again from their span of the input, no re-serialization",
+                "                DefaultJSONParser params = new DefaultJSONParser(((String) parser.input).substring(paramsStart, paramsEnd), parser.getConfig());",
+                "                message.params = params.parseObject((java.lang.reflect.Type) message.type.getClazz());",
+                "                params.close();",
+                "            } else {",
+                "                message.params = ((JSONObject) message.params).toJavaObject((Class<?>) message.type.getClazz(), parser.getConfig(), 0);",
+                "            }",
+                "        }",
+                "        return message;",
+                "    }",
+                "",
+                "    public static final class Message {",
+                "",
+                "        private Integer id;",
+                "",
+                "        private String method;",
+                "",
+                "        private " + EVENT_TYPE_CLASS + " type;",
+                "",
+                "        private Object params;",
+                "",
+                "        private String sessionId;",
+                "",
+                "        private JSONObject result;",
+                "",
+                "        private JSONObject error;",
+                "",
+                "        /**",
+                "        * id of the command this message responds to, null for events",
+                "        */",
+                "        public Integer getId() {",
+                "            return id;",
+                "        }",
+                "",
+                "        public String getMethod() {",
+                "            return method;",
+                "        }",
+                "",
+                "        /**",
+                "        * event type, null for responses and events unknown to this protocol version",
+                "        */",
+                "        public " + EVENT_TYPE_CLASS + " getType() {",
+                "            return type;",
+                "        }",
+                "",
+                "        /**",
+                "        * instance of getType().getClazz() for known events, JSONObject for unknown ones",
+                "        */",
+                "        public Object getParams() {",
+                "            return params;",
+                "        }",
+                "",
+                "        public String getSessionId() {",
+                "            return sessionId;",
+                "        }",
+                "",
+                "        public JSONObject getResult() {",
+                "            return result;",
+                "        }",
+                "",
+                "        public JSONObject getError() {",
+                "            return error;",
+                "        }",
+                "    }",
+                "}");
+
+        writeFile(dirName + "/" + EVENT_DECODER_CLASS + ".java", sb);
+    }
+
+    /**
+     * 生成base64数据的包装类, 保存编码后的字节, 第一次访问时才解码
+     */
+    private void createBinaryClass() throws Exception {
+        String pkg = this.pkg;
+        String dirName = sourceDir(pkg);
+        StringBuffer sb = new StringBuffer();
+        sb.append("package ");
+        sb.append(pkg);
+        sb.append(";");
+        sb.append(CRLF);
+        sb.append(CRLF);
+        appendLines(sb,
+                "import com.alibaba.fastjson.JSONException;",
+                "import com.alibaba.fastjson.annotation.JSONType;",
+                "import com.alibaba.fastjson.parser.DefaultJSONParser;",
+                "import com.alibaba.fastjson.parser.JSONLexer;",
+                "import com.alibaba.fastjson.parser.JSONToken;",
+                "import com.alibaba.fastjson.parser.deserializer.ObjectDeserializer;",
+                "import com.alibaba.fastjson.serializer.JSONSerializer;",
+                "import com.alibaba.fastjson.serializer.ObjectSerializer;",
+                "import com.alibaba.fastjson.serializer.SerializeWriter;",
+                "",
+                "import java.nio.ByteBuffer;",
+                "import java.util.Base64;",
+                "",
+                "/**",
+                "* binary payload transferred as a base64 string, decoded on first access without creating a String.",
+                "* instances may be shared between threads, concurrent first accesses may each decode the payload.",
+                "*/",
+                "@JSONType(serializer = " + BINARY_CLASS + ".Codec.class, deserializer = " + BINARY_CLASS + ".Codec.class)",
+                "public final class " + BINARY_CLASS + " {",
+                "",
+                "    private final byte[] encoded;",
+                "",
+                "    private final int offset;",
+                "",
+                "    private final int length;",
+                "",
+                "    private volatile byte[] decoded;",
+                "",
+                "    private " + BINARY_CLASS + "(byte[] encoded, int offset, int length, byte[] decoded) {",
+                "        this.encoded = encoded;",
+                "        this.offset = offset;",
+                "        this.length = length;",
+                "        this.decoded = decoded;",
+                "    }",
+                "",
+                "    /**",
+                "    * wraps base64 text without copying, the range must not be modified afterwards",
+                "    */",
+                "    public static " + BINARY_CLASS + " ofBase64(byte[] encoded, int offset, int length) {",
+                "        return new " + BINARY_CLASS + "(encoded, offset, length, null);",
+                "    }",
+                "",
+                "    /**",
+                "    * wraps decoded data without copying, the array must not be modified afterwards",
+                "    */",
+                "    public static " + BINARY_CLASS + " of(byte[] data) {",
+                "        return new " + BINARY_CLASS + "(null, 0, 0, data);",
+                "    }",
+                "",
+                "    /**",
+                "    * decoded size, computed from the base64 length when not decoded yet",
+                "    */",
+                "    public int size() {",
+                "        byte[] data = decoded;",
+                "        if (data != null) {",
+                "            return data.length;",
+                "        }",
+                "        int padding = 0;",
+                "        for (int i = offset + length - 1; i >= offset && encoded[i] == '='; i--) {",
+                "            padding++;",
+                "        }",
+                "        return length / 4 * 3 + (length % 4 == 0 ? 0 : length % 4 - 1) - padding;",
+                "    }",
+                "",
+                "    /**",
+                "    * decoded data, shared with this instance and must not be modified",
+                "    */",
+                "    public byte[] array() {",
+                "        byte[] data = decoded;",
+                "        if (data == null) {",
+                "            ByteBuffer buffer = Base64.getDecoder().decode(ByteBuffer.wrap(encoded, offset, length));",
+                "            data = buffer.array();",
+                "            if (buffer.arrayOffset() != 0 || buffer.remaining() != data.length) {",
+                "                data = java.util.Arrays.copyOfRange(data, buffer.arrayOffset() + buffer.position(), buffer.arrayOffset() + buffer.limit());",
+                "            }",
+                "            decoded = data;",
+                "        }",
+                "        return data;",
+                "    }",
+                "",
+                "    /**",
+                "    * read-only view of the decoded data",
+                "    */",
+                "    public ByteBuffer asByteBuffer() {",
+                "        return ByteBuffer.wrap(array()).asReadOnlyBuffer();",
+                "    }",
+                "",
+                "    @Override",
+                "    public String toString() {",
+                "        return \"" + BINARY_CLASS + "[\" + size() + \" bytes]\";",
+                "    }",
+                "",
+                "    public static final class Codec implements ObjectSerializer, ObjectDeserializer {",
+                "",
+                "        public static final Codec INSTANCE = new Codec();",
+                "",
+                "        @Override",
+                "        public void write(JSONSerializer serializer, Object object, Object fieldName, java.lang.reflect.Type fieldType, int features) {",
+                "            SerializeWriter out = serializer.out;",
+                "            if (object == null) {",
+                "                out.writeNull();",
+                "                return;",
+                "            }",
+                "            " + BINARY_CLASS + " binary = (" + BINARY_CLASS + ") object;",
+                "            byte[] encoded = binary.encoded;",
+                "            if (encoded == null) {",
+                "                out.writeByteArray(binary.decoded);",
+                "                return;",
+                "            }",
+                "            //base64 characters need no escaping, copy the raw text in chunks",
+                "            char[] chars = new char[Math.min(binary.length, 8192)];",
+                "            out.write('\"');",
+                "            for (int start = binary.offset, end = binary.offset + binary.length; start < end; start += chars.length) {",
+                "                int count = Math.min(chars.length, end - start);",
+                "                for (int i = 0; i < count; i++) {",
+                "                    chars[i] = (char) encoded[start + i];",
+                "                }",
+                "                out.write(chars, 0, count);",
+                "            }",
+                "            out.write('\"');",
+                "        }",
+                "",
+                "        @Override",
+                "        @SuppressWarnings(\"unchecked\")",
+                "        public <T> T deserialze(DefaultJSONParser parser, java.lang.reflect.Type type, Object fieldName) {",
+                "            JSONLexer lexer = parser.lexer;",
+                "            if (lexer.token() == JSONToken.NULL) {",
+                "                lexer.nextToken(JSONToken.COMMA);",
+                "                return null;",
+                "            }",
+                "            if (lexer.token() != JSONToken.LITERAL_STRING) {",
+                "                throw new JSONException(\"expect base64 string, but \" + JSONToken.name(lexer.token()));",
+                "            }",
+                "            //decode straight from the input without an intermediate String",
+                "            byte[] data = lexer.bytesValue();",
+                "            lexer.nextToken(JSONToken.COMMA);",
+                "            return (T) of(data);",
+                "        }",
+                "",
+                "        @Override",
+                "        public int getFastMatchToken() {",
+                "            return JSONToken.LITERAL_STRING;",
+                "        }",
+                "    }",
+                "}");
+
+        writeFile(dirName + "/" + BINARY_CLASS + ".java", sb);
+    }
+
+    /**
+     * 生成延迟解码事件类的基类, 包含扫描原始JSON字节的方法
+     */
+    private void createLazyClass() throws Exception {
+        String pkg = this.pkg;
+        String dirName = sourceDir(pkg);
+        StringBuffer sb = new StringBuffer();
+        sb.append("package ");
+        sb.append(pkg);
+        sb.append(";");
+        sb.append(CRLF);
+        sb.append(CRLF);
+        appendLines(sb,
+                "import com.alibaba.fastjson.JSON;",
+                "import com.alibaba.fastjson.parser.ParserConfig;",
+                "",
+                "import java.nio.charset.StandardCharsets;",
+                "",
+                "/**",
+                "* base class of lazily decoded events, keeps the raw UTF-8 payload and decodes each property on its first access.",
+                "* first access is not synchronized, an instance shared between threads must be fully read by one of them first.",
+                "* the payload is copied on construction, the caller keeps the ownership of its buffer and may reuse it.",
+                "*/",
+                "public abstract class " + LAZY_CLASS + " {",
+                "",
+                "    private static volatile ParserConfig parserConfig = ParserConfig.getGlobalInstance();",
+                "",
+                "    private byte[] raw;",
+                "",
+                "    /**",
+                "    * start and end offset of each property value in raw, -1 when absent",
+                "    */",
+                "    private int[] spans;",
+                "",
+                "    protected " + LAZY_CLASS + "() {",
+                "    }",
+                "",
+                "    /**",
+                "    * copies raw[offset, offset + length), raw is not referenced after the constructor returns",
+                "    */",
+                "    protected " + LAZY_CLASS + "(byte[] raw, int offset, int length) {",
+                "        this.raw = java.util.Arrays.copyOfRange(raw, offset, offset + length);",
+                "    }",
+                "",
+                "    /**",
+                "    * config used to decode property values, the global instance by default",
+                "    */",
+                "    public static void setParserConfig(ParserConfig config) {",
+                "        parserConfig = config;",
+                "    }",
+                "",
+                "    protected abstract String[] propertyNames();",
+                "",
+                "    protected final boolean isPresent(int index) {",
+                "        if (raw == null) {",
+                "            return false;",
+                "        }",
+                "        int start = spans()[index * 2];",
+                "        return start >= 0 && raw[start] != 'n';",
+                "    }",
+                "",
+                "    protected final <T> T decode(int index, java.lang.reflect.Type type) {",
+                "        if (!isPresent(index)) {",
+                "            return null;",
+                "        }",
+                "        int start = spans[index * 2];",
+                "        return JSON.parseObject(raw, start, spans[index * 2 + 1] - start, StandardCharsets.UTF_8, type, parserConfig, null, JSON.DEFAULT_PARSER_FEATURE);",
+                "    }",
+                "",
+                "    protected final int decodeInt(int index) {",
+                "        Integer value = decode(index, Integer.class);",
+                "        return value != null ? value : 0;",
+                "    }",
+                "",
+                "    protected final double decodeDouble(int index) {",
+                "        Double value = decode(index, Double.class);",
+                "        return value != null ? value : 0D;",
+                "    }",
+                "",
+                "    protected final boolean decodeBoolean(int index) {",
+                "        Boolean value = decode(index, Boolean.class);",
+                "        return value != null && value;",
+                "    }",
+                "");
+        if (binary) {
+            appendLines(sb,
+                    "    /**",
+                    "    * wraps the base64 text in raw, escaped text is decoded by the codec instead",
+                    "    */",
+                    "    protected final " + BINARY_CLASS + " decodeBinary(int index) {",
+                    "        if (!isPresent(index)) {",
+                    "            return null;",
+                    "        }",
+                    "        int start = spans[index * 2];",
+                    "        int end = spans[index * 2 + 1];",
+                    "        for (int i = start + 1; i < end - 1; i++) {",
+                    "            if (raw[i] == '\\\\') {",
+                    "                return decode(index, " + BINARY_CLASS + ".class);",
+                    "            }",
+                    "        }",
+                    "        return " + BINARY_CLASS + ".ofBase64(raw, start + 1, end - start - 2);",
+                    "    }",
+                    "");
+        }
+        appendLines(sb,
+                "    private int[] spans() {",
+                "        if (spans == null) {",
+                "            String[] names = propertyNames();",
+                "            int[] spans = new int[names.length * 2];",
+                "            java.util.Arrays.fill(spans, -1);",
+                "            int[] field = new int[4];",
+                "            int pos = startObject(raw, 0, raw.length);",
+                "            while (pos >= 0 && (pos = nextField(raw, pos, raw.length, field)) >= 0) {",
+                "                for (int i = 0; i < names.length; i++) {",
+                "                    if (" + NAMES_CLASS + ".equals(names[i], raw, field[0], field[1] - field[0])) {",
+                "                        spans[i * 2] = field[2];",
+                "                        spans[i * 2 + 1] = field[3];",
+                "                        break;",
+                "                    }",
+                "                }",
+                "            }",
+                "            this.spans = spans;",
+                "        }",
+                "        return spans;",
+                "    }",
+                "",
+                "    /**",
+                "    * @return position after the opening brace, or -1 when the value is not an object",
+                "    */",
+                "    public static int startObject(byte[] bytes, int pos, int end) {",
+                "        pos = skipWhitespace(bytes, pos, end);",
+                "        return pos < end && bytes[pos] == '{' ? pos + 1 : -1;",
+                "    }",
+                "",
+                "    /**",
+                "    * reads the next field of an object, pos must follow the opening brace or the previous field",
+                "    * @param field receives the start and end of the name (without quotes) and of the value",
+                "    * @return position after the field, or -1 at the end of the object",
+                "    */",
+                "    public static int nextField(byte[] bytes, int pos, int end, int[] field) {",
+                "        pos = skipWhitespace(bytes, pos, end);",
+                "        if (pos < end && bytes[pos] == ',') {",
+                "            pos = skipWhitespace(bytes, pos + 1, end);",
+                "        }",
+                "        if (pos >= end || bytes[pos] == '}') {",
+                "            return -1;",
+                "        }",
+                "        if (bytes[pos] != '\"') {",
+                "            throw new IllegalArgumentException(\"expect field name at \" + pos);",
+                "        }",
+                "        field[0] = pos + 1;",
+                "        pos = skipString(bytes, pos, end);",
+                "        field[1] = pos - 1;",
+                "        pos = skipWhitespace(bytes, pos, end);",
+                "        if (pos >= end || bytes[pos] != ':') {",
+                "            throw new IllegalArgumentException(\"expect ':' at \" + pos);",
+                "        }",
+                "        pos = skipWhitespace(bytes, pos + 1, end);",
+                "        field[2] = pos;",
+                "        pos = skipValue(bytes, pos, end);",
+                "        field[3] = pos;",
+                "        return pos;",
+                "    }",
+                "",
+                "    public static int skipWhitespace(byte[] bytes, int pos, int end) {",
+                "        while (pos < end && (bytes[pos] == ' ' || bytes[pos] == '\\n' || bytes[pos] == '\\r' || bytes[pos] == '\\t')) {",
+                "            pos++;",
+                "        }",
+                "        return pos;",
+                "    }",
+                "",
+                "    public static int skipString(byte[] bytes, int pos, int end) {",
+                "        for (pos++; pos < end; pos++) {",
+                "            if (bytes[pos] == '\\\\') {",
+                "                pos++;",
+                "            } else if (bytes[pos] == '\"') {",
+                "                return pos + 1;",
+                "            }",
+                "        }",
+                "        throw new IllegalArgumentException(\"unterminated string\");",
+                "    }",
+                "",
+                "    public static int skipValue(byte[] bytes, int pos, int end) {",
+                "        if (pos >= end) {",
+                "            throw new IllegalArgumentException(\"expect value at \" + pos);",
+                "        }",
+                "        if (bytes[pos] == '\"') {",
+                "            return skipString(bytes, pos, end);",
+                "        }",
+                "        if (bytes[pos] == '{' || bytes[pos] == '[') {",
+                "            int depth = 0;",
+                "            while (pos < end) {",
+                "                byte b = bytes[pos];",
+                "                if (b == '\"') {",
+                "                    pos = skipString(bytes, pos, end);",
+                "                    continue;",
+                "                }",
+                "                if (b == '{' || b == '[') {",
+                "                    depth++;",
+                "                } else if ((b == '}' || b == ']') && --depth == 0) {",
+                "                    return pos + 1;",
+                "                }",
+                "                pos++;",
+                "            }",
+                "            throw new IllegalArgumentException(\"unterminated value\");",
+                "        }",
+                "        //number, true, false, null",
+                "        while (pos < end && bytes[pos] != ',' && bytes[pos] != '}' && bytes[pos] != ']'",
+                "                && bytes[pos] != ' ' && bytes[pos] != '\\n' && bytes[pos] != '\\r' && bytes[pos] != '\\t') {",
+                "            pos++;",
+                "        }",
+                "        return pos;",
+                "    }",
+                "}");
+
+        writeFile(dirName + "/" + LAZY_CLASS + ".java", sb);
+    }
+
+    /**
+     * 延迟解码模式下直接扫描消息的字节, 事件参数只记录位置, 由事件类在访问属性时解码
+     */
+    private StringBuffer createLazyEventDecoder(Map<String, Type> events) {
+        String lazy = this.pkg + "." + LAZY_CLASS;
+        String names = this.pkg + "." + NAMES_CLASS;
+        StringBuffer sb = new StringBuffer();
+        appendLines(sb,
+                "    /**",
+                "    * params of known events are copied into the event, bytes may be reused once this method returns",
+                "    */",
+                "    public static Message decode(byte[] bytes, int offset, int length, ParserConfig config) {",
+                "        int end = offset + length;",
+                "        int pos = " + lazy + ".startObject(bytes, offset, end);",
+                "        if (pos < 0) {",
+                "            return null;",
+                "        }",
+                "        Message message = new Message();",
+                "        int[] field = new int[4];",
+                "        int paramsStart = -1;",
+                "        int paramsEnd = -1;",
+                "        while ((pos = " + lazy + ".nextField(bytes, pos, end, field)) >= 0) {",
+                "            int nameLength = field[1] - field[0];",
+                "            if (" + names + ".equals(\"method\", bytes, field[0], nameLength)) {",
+                "                message.type = " + EVENT_TYPE_CLASS + ".findByName(bytes, field[2] + 1, field[3] - field[2] - 2);",
+                "                message.method = message.type != null ? message.type.getName() : parse(bytes, field[2], field[3], String.class, config);",
+                "            } else if (" + names + ".equals(\"params\", bytes, field[0], nameLength)) {",
+                "                paramsStart = field[2];",
+                "                paramsEnd = field[3];",
+                "            } else if (" + names + ".equals(\"id\", bytes, field[0], nameLength)) {",
+                "                message.id = parse(bytes, field[2], field[3], Integer.class, config);",
+                "            } else if (" + names + ".equals(\"sessionId\", bytes, field[0], nameLength)) {",
+                "                message.sessionId = parse(bytes, field[2], field[3], String.class, config);",
+                "            } else if (" + names + ".equals(\"result\", bytes, field[0], nameLength)) {",
+                "                message.result = parse(bytes, field[2], field[3], JSONObject.class, config);",
+                "            } else if (" + names + ".equals(\"error\", bytes, field[0], nameLength)) {",
+                "                message.error = parse(bytes, field[2], field[3], JSONObject.class, config);",
+                "            }",
+                "        }",
+                "        if (paramsStart >= 0) {",
+                "            if (message.type != null) {",
+                "                message.params = newEvent(message.type, bytes, paramsStart, paramsEnd - paramsStart);",
+                "            } else {",
+                "                message.params = parse(bytes, paramsStart, paramsEnd, JSONObject.class, config);",
+                "            }",
+                "        }",
+                "        return message;",
+                "    }",
+                "",
+                "    private static <T> T parse(byte[] bytes, int start, int end, java.lang.reflect.Type type, ParserConfig config) {",
+                "        return JSON.parseObject(bytes, start, end - start, java.nio.charset.StandardCharsets.UTF_8, type, config, null, JSON.DEFAULT_PARSER_FEATURE);",
+                "    }",
+                "",
+                "    private static Object newEvent(" + EVENT_TYPE_CLASS + " type, byte[] bytes, int offset, int length) {",
+                "        switch (type.ordinal()) {");
+        int ordinal = 0;
+        for (Map.Entry<String, Type> entry : events.entrySet()) {
+            Type clazz = entry.getValue();
+            if (clazz != null) {
+                sb.append("            case ");
+                sb.append(ordinal);
+                sb.append(": //");
+                sb.append(entry.getKey());
+                sb.append(CRLF);
+                sb.append("                return new ");
+                sb.append(clazz.getPackage() + "." + clazz.id);
+                sb.append("(bytes, offset, length);");
+                sb.append(CRLF);
+            }
+            ordinal++;
+        }
+        appendLines(sb,
+                "            default:",
+                "                return null;",
+                "        }",
+                "    }",
+                "");
+        return sb;
+    }
+
+    public void createEventEnum(Map<String, Type> values) throws Exception {
+        String pkg = this.pkg;
+        String dirName = sourceDir(pkg);
+        String enumClassName = EVENT_TYPE_CLASS;
+        StringBuffer sb = new StringBuffer();
+        sb.append("package ");
+        sb.append(pkg);
+        sb.append(";");
+        sb.append(CRLF);
+        sb.append(CRLF);
+
+        sb.append("public enum ");
+        sb.append(enumClassName);
+        sb.append(" {");
+        sb.append(CRLF);
+        sb.append(CRLF);
+        for(Map.Entry<String, Type> entry : values.entrySet()) {
+            Type clazz = entry.getValue();
+            String name = entry.getKey().toUpperCase().replaceAll("[^a-zA-Z0-9_]", "_");
+            if (clazz != null && StringUtils.isNotEmpty(clazz.description)) {
+                sb.append("    /**");
+                sb.append(CRLF);
+                sb.append("    * ");
+                sb.append(clazz.description.replaceAll("(\r\n|\n|\r)", " "));
+                sb.append(CRLF);
+                sb.append("    * @see ");
+                sb.append(clazz.getPackage() + "." + clazz.id);
+                sb.append(CRLF);
+                sb.append("    */");
+                sb.append(CRLF);
+            }
+            sb.append("    ");
+            sb.append(name);
+            sb.append("(\"");
+            sb.append(entry.getKey());
+            sb.append("\"");
+            sb.append(", ");
+            if (clazz != null) {
+                sb.append(clazz.getPackage() + "." + clazz.id);
+                sb.append(".class");
+            } else {
+                sb.append("null");
+            }
+            sb.append(")");
+            sb.append(",");
+            sb.append(CRLF);
+            sb.append(CRLF);
+        }
+        sb.append("    ;");
+        sb.append(CRLF);
+        sb.append(CRLF);
+        sb.append("    private String name;");
+        sb.append(CRLF);
+        sb.append(CRLF);
+        sb.append("    private Class clazz;");
+        sb.append(CRLF);
+        sb.append(CRLF);
+        sb.append("    ");
+        sb.append(enumClassName);
+        sb.append("(String name, Class clazz) {");
+        sb.append(CRLF);
+        sb.append("        this.name = name;");
+        sb.append(CRLF);
+        sb.append("        this.clazz = clazz;");
+        sb.append(CRLF);
+        sb.append("    }");
+        sb.append(CRLF);
+        sb.append(CRLF);
+        sb.append("    public String getName() {");
+        sb.append(CRLF);
+        sb.append("        return name;");
+        sb.append(CRLF);
+        sb.append("    }");
+        sb.append(CRLF);
+        sb.append(CRLF);
+        sb.append("    public Class getClazz() {");
+        sb.append(CRLF);
+        sb.append("        return clazz;");
+        sb.append(CRLF);
+        sb.append("    }");
+        sb.append(CRLF);
+        sb.append(CRLF);
+        sb.append(createLookup(enumClassName, "name", "findByName", values.size()));
+        sb.append("}");
+
+        writeFile(dirName + "/" + enumClassName + ".java", sb);
+    }
+
+    /**
+     * 生成所有command的枚举, 序号即command的id, 方法名片段在类初始化时编码一次
+     */
+    private void createMethodEnum(List<Domain> domains) throws Exception {
+        String pkg = this.pkg;
+        String dirName = sourceDir(pkg);
+        StringBuffer sb = new StringBuffer();
+        sb.append("package ");
+        sb.append(pkg);
+        sb.append(";");
+        sb.append(CRLF);
+        sb.append(CRLF);
+        sb.append("/**");
+        sb.append(CRLF);
+        sb.append("* all commands, ordinal() is a dense command id usable as an array index");
+        sb.append(CRLF);
+        sb.append("*/");
+        sb.append(CRLF);
+        sb.append("public enum ");
+        sb.append(METHOD_CLASS);
+        sb.append(" {");
+        sb.append(CRLF);
+        sb.append(CRLF);
+        int count = 0;
+        for (Domain domain : domains) {
+            if (isEmpty(domain.commands)) {
+                continue;
+            }
+            for (Command command : domain.commands) {
+                if (!(domain.domain + "." + command.name).matches("[a-zA-Z0-9_.]+")) {
+                    throw new MojoFailureException("command name needs escaping: " + domain.domain + "." + command.name);
+                }
+                sb.append("    ");
+                sb.append(methodConstant(domain, command));
+                sb.append("(\"");
+                sb.append(domain.domain);
+                sb.append(".");
+                sb.append(command.name);
+                sb.append("\"),");
+                sb.append(CRLF);
+                count++;
+            }
+        }
+        sb.append("    ;");
+        sb.append(CRLF);
+        sb.append(CRLF);
+        appendLines(sb,
+                "    private final String name;",
+                "",
+                "    private final byte[] prefix;",
+                "",
+                "    " + METHOD_CLASS + "(String name) {",
+                "        this.name = name;",
+                "        //method names only contain letters, digits and dots, nothing to escape",
+                "        this.prefix = (\"{\\\"method\\\":\\\"\" + name + \"\\\"\").getBytes(java.nio.charset.StandardCharsets.UTF_8);",
+                "    }",
+                "",
+                "    public String getName() {",
+                "        return name;",
+                "    }",
+                "",
+                "    public int getId() {",
+                "        return ordinal();",
+                "    }",
+                "",
+                "    /**",
+                "    * UTF-8 bytes of {\"method\":\"Domain.name\", shared by all calls and must not be modified",
+                "    */",
+                "    public byte[] getPrefix() {",
+                "        return prefix;",
+                "    }",
+                "",
+                "    @Override",
+                "    public String toString() {",
+                "        return name;",
+                "    }",
+                "");
+        sb.append(createLookup(METHOD_CLASS, "name", "findByName", count));
+        sb.append("}");
+
+        writeFile(dirName + "/" + METHOD_CLASS + ".java", sb);
+    }
+
+    /**
+     * 生成会话类, 每个domain的客户端在第一次访问时才创建
+     */
+    private void createSession(List<Domain> domains) throws Exception {
+        String pkg = this.pkg;
+        //依赖connection, 预编译模式下同样由项目编译
+        String dirName = baseDir + "/" + pkg.replace(".", "/");
+        StringBuffer sb = new StringBuffer();
+        sb.append("package ");
+        sb.append(pkg);
+        sb.append(";");
+        sb.append(CRLF);
+        sb.append(CRLF);
+        appendLines(sb,
+                "/**",
+                "* entry of all domains of one connection, each domain client is created on its first use.",
+                "*/",
+                "public class " + sessionClassName + " {",
+                "",
+                "    private final " + connectionClassName + " connection;",
+                "");
+        for (Domain domain : domains) {
+            if (isEmpty(domain.commands)) {
+                continue;
+            }
+            sb.append("    private volatile ");
+            sb.append(pkg + ".domain." + domain.domain);
+            sb.append(" ");
+            sb.append(variableName(domain.domain));
+            sb.append(";");
+            sb.append(CRLF);
+            sb.append(CRLF);
+        }
+        appendLines(sb,
+                "    public " + sessionClassName + "(" + connectionClassName + " connection) {",
+                "        this.connection = connection;",
+                "    }",
+                "",
+                "    public " + connectionClassName + " getConnection() {",
+                "        return connection;",
+                "    }");
+        for (Domain domain : domains) {
+            if (isEmpty(domain.commands)) {
+                continue;
+            }
+            String className = pkg + ".domain." + domain.domain;
+            String name = variableName(domain.domain);
+            sb.append(CRLF);
+            if (domain.experimental) {
+                sb.append("    /**");
+                sb.append(CRLF);
+                sb.append("    * experimental");
+                sb.append(CRLF);
+                sb.append("    */");
+                sb.append(CRLF);
+            }
+            if (domain.deprecated) {
+                sb.append("    @java.lang.Deprecated");
+                sb.append(CRLF);
+            }
+            appendLines(sb,
+                    "    public " + className + " " + name + "() {",
+                    "        " + className + " " + name + " = this." + name + ";",
+                    "        if (" + name + " == null) {",
+                    "            synchronized (this) {",
+                    "                " + name + " = this." + name + ";",
+                    "                if (" + name + " == null) {",
+                    "                    " + name + " = new " + className + "(connection);",
+                    "                    this." + name + " = " + name + ";",
+                    "                }",
+                    "            }",
+                    "        }",
+                    "        return " + name + ";",
+                    "    }");
+        }
+        sb.append(CRLF);
+        sb.append("}");
+
+        writeFile(dirName + "/" + sessionClassName + ".java", sb);
+    }
+
+    /**
+     * 生成domain的事件监听接口, 每个事件对应一个默认为空实现的方法
+     */
+    private void createListener(Domain domain, Map<String, Type> events) throws Exception {
+        String pkg = this.pkg + ".listener";
+        String dirName = sourceDir(pkg);
+        String className = domain.domain + "Listener";
+        StringBuffer sb = new StringBuffer();
+        sb.append("package ");
+        sb.append(pkg);
+        sb.append(";");
+        sb.append(CRLF);
+        sb.append(CRLF);
+        sb.append("/**");
+        sb.append(CRLF);
+        sb.append("* listener of ");
+        sb.append(domain.domain);
+        sb.append(" events, methods not overridden ignore the event");
+        sb.append(CRLF);
+        sb.append("*/");
+        sb.append(CRLF);
+        sb.append("public interface ");
+        sb.append(className);
+        sb.append(" {");
+        sb.append(CRLF);
+        for (Map.Entry<String, Type> entry : events.entrySet()) {
+            Type clazz = entry.getValue();
+            sb.append(CRLF);
+            if (clazz != null && StringUtils.isNotEmpty(clazz.description)) {
+                sb.append("    /**");
+                sb.append(CRLF);
+                sb.append("    * ");
+                sb.append(clazz.description.replaceAll("(\r\n|\n|\r)", " "));
+                sb.append(CRLF);
+                sb.append("    */");
+                sb.append(CRLF);
+            }
+            sb.append("    default void ");
+            sb.append(listenerMethod(entry.getKey()));
+            sb.append("(");
+            if (clazz != null) {
+                sb.append(clazz.getPackage() + "." + clazz.id);
+                sb.append(" event");
+            }
+            sb.append(") {");
+            sb.append(CRLF);
+            sb.append("    }");
+            sb.append(CRLF);
+        }
+        sb.append(CRLF);
+        sb.append("}");
+
+        writeFile(dirName + "/" + className + ".java", sb);
+    }
+
+    /**
+     * 生成事件分发器, 按CDPEventType的序号switch, 直接调用对应domain监听接口的方法
+     */
+    private void createEventDispatcher(Map<String, Type> events) throws Exception {
+        String pkg = this.pkg;
+        String dirName = sourceDir(pkg);
+        //事件所属的domain, 保持协议中的顺序
+        Set<String> domains = new LinkedHashSet<>();
+        for (String name : events.keySet()) {
+            domains.add(name.substring(0, name.indexOf('.')));
+        }
+        StringBuffer sb = new StringBuffer();
+        sb.append("package ");
+        sb.append(pkg);
+        sb.append(";");
+        sb.append(CRLF);
+        sb.append(CRLF);
+        appendLines(sb,
+                "/**",
+                "* routes events to the listener of their domain, listeners may be replaced from any thread.",
+                "*/",
+                "public final class " + DISPATCHER_CLASS + " {",
+                "");
+        for (String domain : domains) {
+            sb.append("    private volatile ");
+            sb.append(listenerClass(domain));
+            sb.append(" ");
+            sb.append(listenerField(domain));
+            sb.append(";");
+            sb.append(CRLF);
+            sb.append(CRLF);
+        }
+        for (String domain : domains) {
+            String listener = listenerClass(domain);
+            String field = listenerField(domain);
+            appendLines(sb,
+                    "    public " + listener + " get" + domain + "Listener() {",
+                    "        return " + field + ";",
+                    "    }",
+                    "",
+                    "    public void set" + domain + "Listener(" + listener + " listener) {",
+                    "        this." + field + " = listener;",
+                    "    }",
+                    "");
+        }
+        if (eventDecoder) {
+            appendLines(sb,
+                    "    public void dispatch(" + EVENT_DECODER_CLASS + ".Message message) {",
+                    "        if (message.getType() != null) {",
+                    "            dispatch(message.getType(), message.getParams());",
+                    "        }",
+                    "    }",
+                    "");
+        }
+        appendLines(sb,
+                "    public void dispatch(" + EVENT_TYPE_CLASS + " type, Object event) {",
+                "        switch (type.ordinal()) {");
+        int ordinal = 0;
+        for (Map.Entry<String, Type> entry : events.entrySet()) {
+            String domain = entry.getKey().substring(0, entry.getKey().indexOf('.'));
+            String listener = listenerClass(domain);
+            Type clazz = entry.getValue();
+            sb.append("            case ");
+            sb.append(ordinal++);
+            sb.append(": { //");
+            sb.append(entry.getKey());
+            sb.append(CRLF);
+            appendLines(sb,
+                    "                " + listener + " listener = " + listenerField(domain) + ";",
+                    "                if (listener != null) {");
+            sb.append("                    listener.");
+            sb.append(listenerMethod(entry.getKey()));
+            sb.append("(");
+            if (clazz != null) {
+                sb.append("(");
+                sb.append(clazz.getPackage() + "." + clazz.id);
+                sb.append(") event");
+            }
+            sb.append(");");
+            sb.append(CRLF);
+            appendLines(sb,
+                    "                }",
+                    "                return;",
+                    "            }");
+        }
+        appendLines(sb,
+                "        }",
+                "    }",
+                "}");
+
+        writeFile(dirName + "/" + DISPATCHER_CLASS + ".java", sb);
+    }
+
+    private String listenerClass(String domain) {
+        return this.pkg + ".listener." + domain + "Listener";
+    }
+
+    /**
+     * DOM -> domListener, DOMSnapshot -> domSnapshotListener, IndexedDB -> indexedDBListener
+     */
+    private static String listenerField(String domain) {
+        return variableName(domain) + "Listener";
+    }
+
+    private static String listenerMethod(String event) {
+        return "on" + StringUtils.capitalize(event.substring(event.indexOf('.') + 1));
+    }
+
+    /**
+     * 首字母小写, 开头是连续的大写缩写时整个缩写小写
+     */
+    private static String variableName(String name) {
+        int upper = 0;
+        while (upper < name.length() && Character.isUpperCase(name.charAt(upper))) {
+            upper++;
+        }
+        if (upper == name.length()) {
+            return name.toLowerCase();
+        }
+        int end = upper > 1 ? upper - 1 : 1;
+        return name.substring(0, end).toLowerCase() + name.substring(end);
+    }
+
+    public Map<String, Type> createEvent(Domain domain) throws Exception {
+        if (isEmpty(domain.events)) {
+            return new HashMap<>();
+        }
+        //生成class
+        Map<String, Type> values = new LinkedHashMap<>();
+        for(Event event : domain.events) {
+            if (isNotEmpty(event.parameters)) {
+                Type param = new Type();
+                param.id = StringUtils.removeEndIgnoreCase(StringUtils.capitalize(event.name), "event") + "Event";
+                param.description = event.description;
+                param.properties = event.parameters;
+                param.type = TypeType.OBJECT;
+                param.domain = domain;
+                param.event = true;
+                createType(domain, param);
+                values.put(domain.domain + "." + event.name, param);
+            } else {
+                values.put(domain.domain + "." + event.name, null);
+            }
+        }
+        return values;
+    }
+
+    public void createCommand(Domain domain) throws Exception {
+        String pkg = this.pkg + ".domain";
+        String dirName = sourceDir(pkg);
+        StringBuffer sb = new StringBuffer();
+
+        sb.append("package ");
+        sb.append(pkg);
+        sb.append(";");
+        sb.append(CRLF);
+        sb.append(CRLF);
+        sb.append("/**");
+        if (domain.experimental) {
+            sb.append(CRLF);
+            sb.append("* experimental");
+        }
+        sb.append(CRLF);
+        sb.append("*/");
+        if (domain.deprecated) {
+            sb.append(CRLF);
+            sb.append("@java.lang.Deprecated");
+        }
+        sb.append(CRLF);
+        sb.append("public class ");
+        sb.append(domain.domain);
+        sb.append(" {");
+        sb.append(CRLF);
+        sb.append(CRLF);
+        //属性及构造方法
+
+        String varName;
+        sb.append("    private ");
+        sb.append(connectionClassName);
+        sb.append(" connection;");
+        sb.append(CRLF);
+        sb.append(CRLF);
+        sb.append("    public ");
+        sb.append(domain.domain);
+        sb.append("(");
+        sb.append(connectionClassName);
+        sb.append(" connection");
+        sb.append(") {");
+        sb.append(CRLF);
+        sb.append("        this.connection = connection;");
+        sb.append(CRLF);
+        sb.append("    }");
+        varName = "connection";
+        //dedupeTypes时结构相同的返回值共用一个Response类
+        Map<String, Type> responses = new HashMap<>();
+        //接口方法
+        for(Command command : domain.commands) {
+            sb.append(CRLF);
+            sb.append(CRLF);
+            sb.append("    /**");
+            if (StringUtils.isNotEmpty(command.description)) {
+                sb.append(CRLF);
+                sb.append("    * ");
+                sb.append(command.description.replaceAll("(\r\n|\n|\r)", " "));
+            }
+            if (command.experimental) {
+                sb.append(CRLF);
+                sb.append("    * experimental");
+            }
+            sb.append(CRLF);
+            sb.append("    */");
+            if (command.deprecated) {
+                sb.append(CRLF);
+                sb.append("    @java.lang.Deprecated");
+            }
+            sb.append(CRLF);
+            sb.append("    public ");
+            Type ret = null;
+            Type param = null;
+            if (isEmpty(command.returns)) {
+                sb.append(futureClassName);
+                sb.append("<?>");
+            } else {
+                //生成返回值结构体
+                ret = new Type();
+                ret.id = StringUtils.capitalize(command.name) + "Response";
+                ret.properties = command.returns;
+                ret.type = TypeType.OBJECT;
+                ret.domain = domain;
+                String key = dedupeTypes ? structureKey(domain, ret) : null;
+                Type shared = key != null ? responses.putIfAbsent(key, ret) : null;
+                if (shared != null) {
+                    ret = shared;
+                    dedupedCount.incrementAndGet();
+                } else {
+                    Type named = key != null ? sharedTypes.get(domain.domain).get(key) : null;
+                    if (named != null) {
+                        ret.sourceId = ret.id;
+                        ret.id = named.id;
+                        ret.description = named.description;
+                    }
+                    createType(domain, ret);
+                }
+                sb.append(futureClassName);
+                sb.append("<");
+                sb.append(ret.getPackage() + "." + ret.id);
+                sb.append(">");
+            }
+            sb.append(" ");
+            sb.append(command.name);
+            sb.append("(");
+            //处理参数
+            if (isNotEmpty(command.parameters)) {
+                param = new Type();
+                param.id = StringUtils.capitalize(command.name) + "Request";
+                param.properties = command.parameters;
+                param.type = TypeType.OBJECT;
+                param.domain = domain;
+                param.reusable = isNotEmpty(reusableRequests) && matches(reusableRequests, domain.domain, command.name, new HashSet<>());
+                createType(domain, param);
+                sb.append(param.getPackage() + "." + param.id + " request");
+            }
+            sb.append(")");
+            sb.append(" {");
+            sb.append(CRLF);
+
+            if (isNotEmpty(command.returns)) {
+                sb.append("        return ");
+                sb.append(varName);
+                sb.append(".send(");
+                sb.append(methodArg(domain, command));
+                sb.append(", ");
+                if (isNotEmpty(command.parameters)) {
+                    sb.append("request, ");
+                } else {
+                    sb.append("null, ");
+                }
+                sb.append(ret.getPackage() + "." + ret.id + ".class");
+                sb.append(")");
+            } else {
+                sb.append("        return ");
+                sb.append(varName);
+                sb.append(".send(");
+                sb.append(methodArg(domain, command));
+                sb.append(", ");
+                if (isNotEmpty(command.parameters)) {
+                    sb.append("request");
+                } else {
+                    sb.append("null");
+                }
+                sb.append(")");
+            }
+            sb.append(";");
+            sb.append(CRLF);
+            sb.append("    }");
+            sb.append(CRLF);
+            if (batchCommands && param != null) {
+                sb.append(createBatchCommand(domain, command, ret, param, varName));
+            }
+            if (param != null && param.reusable) {
+                sb.append(createReusingCommand(domain, command, ret, param, varName));
+            }
+            if (oneWayCommands && ret == null) {
+                sb.append(createNoReplyCommand(domain, command, param, varName));
+            }
+            if (blockingCommands) {
+                sb.append(createBlockingCommand(domain, command, ret, param, varName));
+            }
+        }
+        sb.append(CRLF);
+        sb.append("}");
+
+        writeFile(dirName + "/" + domain.domain + ".java", sb);
+    }
+
+    /**
+     * 传给connection的方法参数, 开启preEncodedMethods时为CDPMethod常量, 否则为方法名字符串
+     */
+    private String methodArg(Domain domain, Command command) {
+        if (preEncodedMethods) {
+            return this.pkg + "." + METHOD_CLASS + "." + methodConstant(domain, command);
+        }
+        return "\"" + domain.domain + "." + command.name + "\"";
+    }
+
+    private static String methodConstant(Domain domain, Command command) {
+        return (domain.domain + "." + command.name).toUpperCase().replaceAll("[^a-zA-Z0-9_]", "_");
+    }
+
+    /**
+     * 生成批量调用的方法, 所有请求由connection一次写出, 全部响应返回后一起完成
+     */
+    private StringBuffer createBatchCommand(Domain domain, Command command, Type ret, Type param, String varName) {
+        StringBuffer sb = new StringBuffer();
+        sb.append(CRLF);
+        sb.append("    /**");
+        sb.append(CRLF);
+        sb.append("    * batch variant of ");
+        sb.append(command.name);
+        sb.append(", the requests are written together and the future completes with the responses in request order");
+        sb.append(CRLF);
+        sb.append("    */");
+        if (command.deprecated) {
+            sb.append(CRLF);
+            sb.append("    @java.lang.Deprecated");
+        }
+        sb.append(CRLF);
+        sb.append("    public ");
+        sb.append(futureClassName);
+        if (ret != null) {
+            sb.append("<java.util.List<");
+            sb.append(ret.getPackage() + "." + ret.id);
+            sb.append(">>");
+        } else {
+            sb.append("<?>");
+        }
+        sb.append(" ");
+        sb.append(command.name);
+        sb.append("Batch(java.util.List<");
+        sb.append(param.getPackage() + "." + param.id);
+        sb.append("> requests) {");
+        sb.append(CRLF);
+        sb.append("        return ");
+        sb.append(varName);
+        sb.append(".sendBatch(");
+        sb.append(methodArg(domain, command));
+        sb.append(", requests");
+        if (ret != null) {
+            sb.append(", ");
+            sb.append(ret.getPackage() + "." + ret.id + ".class");
+        }
+        sb.append(");");
+        sb.append(CRLF);
+        sb.append("    }");
+        sb.append(CRLF);
+        return sb;
+    }
+
+    /**
+     * 生成发送调用方持有的请求对象的方法, connection返回前完成序列化, 请求对象可以立即reset后复用
+     */
+    private StringBuffer createReusingCommand(Domain domain, Command command, Type ret, Type param, String varName) {
+        StringBuffer sb = new StringBuffer();
+        sb.append(CRLF);
+        sb.append("    /**");
+        sb.append(CRLF);
+        sb.append("    * sends a caller-owned request of ");
+        sb.append(command.name);
+        sb.append(", the request may be reset and reused as soon as this method returns");
+        sb.append(CRLF);
+        sb.append("    */");
+        if (command.deprecated) {
+            sb.append(CRLF);
+            sb.append("    @java.lang.Deprecated");
+        }
+        sb.append(CRLF);
+        sb.append("    public ");
+        sb.append(futureClassName);
+        if (ret != null) {
+            sb.append("<");
+            sb.append(ret.getPackage() + "." + ret.id);
+            sb.append(">");
+        } else {
+            sb.append("<?>");
+        }
+        sb.append(" ");
+        sb.append(command.name);
+        sb.append("Reusing(");
+        sb.append(param.getPackage() + "." + param.id);
+        sb.append(" request) {");
+        sb.append(CRLF);
+        sb.append("        return ");
+        sb.append(varName);
+        sb.append(".sendReusing(");
+        sb.append(methodArg(domain, command));
+        sb.append(", request");
+        if (ret != null) {
+            sb.append(", ");
+            sb.append(ret.getPackage() + "." + ret.id + ".class");
+        }
+        sb.append(");");
+        sb.append(CRLF);
+        sb.append("    }");
+        sb.append(CRLF);
+        return sb;
+    }
+
+    /**
+     * 生成不等待响应的方法, 不创建future, connection也不需要记录等待中的请求
+     */
+    private StringBuffer createNoReplyCommand(Domain domain, Command command, Type param, String varName) {
+        StringBuffer sb = new StringBuffer();
+        sb.append(CRLF);
+        sb.append("    /**");
+        sb.append(CRLF);
+        sb.append("    * fire-and-forget variant of ");
+        sb.append(command.name);
+        sb.append(", no future is created and the response is discarded");
+        sb.append(CRLF);
+        sb.append("    */");
+        if (command.deprecated) {
+            sb.append(CRLF);
+            sb.append("    @java.lang.Deprecated");
+        }
+        sb.append(CRLF);
+        sb.append("    public void ");
+        sb.append(command.name);
+        sb.append("NoReply(");
+        if (param != null) {
+            sb.append(param.getPackage() + "." + param.id);
+            sb.append(" request");
+        }
+        sb.append(") {");
+        sb.append(CRLF);
+        sb.append("        ");
+        sb.append(varName);
+        sb.append(".sendNoReply(");
+        sb.append(methodArg(domain, command));
+        sb.append(param != null ? ", request);" : ", null);");
+        sb.append(CRLF);
+        sb.append("    }");
+        sb.append(CRLF);
+        return sb;
+    }
+
+    /**
+     * 生成阻塞等待响应的方法, 适合虚拟线程中调用, 异常与Future.get(long, TimeUnit)一致
+     */
+    private StringBuffer createBlockingCommand(Domain domain, Command command, Type ret, Type param, String varName) {
         StringBuffer sb = new StringBuffer();
+        sb.append(CRLF);
+        sb.append("    /**");
+        sb.append(CRLF);
+        sb.append("    * blocking variant of ");
+        sb.append(command.name);
+        sb.append(", waits at most the given time for the response");
+        sb.append(CRLF);
+        sb.append("    */");
+        if (command.deprecated) {
+            sb.append(CRLF);
+            sb.append("    @java.lang.Deprecated");
+        }
+        sb.append(CRLF);
+        sb.append("    public ");
+        sb.append(ret != null ? ret.getPackage() + "." + ret.id : "void");
+        sb.append(" ");
+        sb.append(command.name);
+        sb.append("Blocking(");
+        if (param != null) {
+            sb.append(param.getPackage() + "." + param.id);
+            sb.append(" request, ");
+        }
+        sb.append("long timeout, java.util.concurrent.TimeUnit unit) throws java.lang.InterruptedException, java.util.concurrent.ExecutionException, java.util.concurrent.TimeoutException {");
+        sb.append(CRLF);
+        sb.append("        ");
+        if (ret != null) {
+            sb.append("return ");
+        }
+        sb.append(varName);
+        sb.append(".sendBlocking(");
+        sb.append(methodArg(domain, command));
+        sb.append(param != null ? ", request" : ", null");
+        if (ret != null) {
+            sb.append(", ");
+            sb.append(ret.getPackage() + "." + ret.id + ".class");
+        }
+        sb.append(", timeout, unit);");
+        sb.append(CRLF);
+        sb.append("    }");
+        sb.append(CRLF);
+        return sb;
+    }
+
+    public static Document readProtocol(File file) throws Exception {
+        //协议文件固定为UTF-8编码, 边读边解析, 不再把整个文件拼成字符串
+        Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8), 64 * 1024);
+        try (JSONReader jsonReader = new JSONReader(reader, Feature.DisableCircularReferenceDetect)) {
+            return jsonReader.readObject(Document.class);
+        }
+    }
 
+    public void createType(Domain domain, Type type) throws Exception {
+        if (!(type.isEnum() || type.isObject())) {
+            //不是枚举, 也不是类, 不需要生成
+            return;
+        }
+        String dirName = sourceDir(type.getPackage());
+        StringBuffer sb = new StringBuffer();
         sb.append("package ");
-        sb.append(pkg);
+        sb.append(type.getPackage());
         sb.append(";");
         sb.append(CRLF);
         sb.append(CRLF);
         sb.append("/**");
+        if (StringUtils.isNotEmpty(type.description)) {
+            sb.append(CRLF);
+            sb.append("* ");
+            sb.append(type.description.replaceAll("(\r\n|\n|\r)", " "));
+        }
         if (domain.experimental) {
             sb.append(CRLF);
             sb.append("* experimental");
         }
-        sb.append(CRLF);
-        sb.append("*/");
-        if (domain.deprecated) {
-            sb.append(CRLF);
-            sb.append("@java.lang.Deprecated");
+        sb.append(CRLF);
+        sb.append("*/");
+        sb.append(CRLF);
+
+        if (type.isEnum()) {
+            sb.append(createEnum(domain, type));
+        } else {
+            sb.append(createObject(domain, type));
+        }
+
+        writeFile(dirName + "/" + type.id + ".java", sb);
+        if (codecs) {
+            (type.isEnum() ? codecEnums : codecClasses).add(type.getPackage() + "." + type.id);
+        }
+    }
+
+    public StringBuffer createEnum(Domain domain, Type type) {
+        StringBuffer sb = new StringBuffer();
+        sb.append("public enum ");
+        sb.append(type.id);
+        sb.append(" implements ");
+        sb.append(this.pkg);
+        sb.append(".");
+        sb.append(ENUM_CLASS);
+        sb.append(" {");
+        sb.append(CRLF);
+        sb.append(CRLF);
+        for(String e : type.enums) {
+            String name = e.toUpperCase().replaceAll("[^a-zA-Z0-9_]", "_");
+            sb.append("    ");
+            sb.append(name);
+            sb.append("(\"");
+            sb.append(e);
+            sb.append("\")");
+            sb.append(",");
+            sb.append(CRLF);
+        }
+        sb.append("    ;");
+        sb.append(CRLF);
+        sb.append(CRLF);
+        sb.append("    private String value;");
+        sb.append(CRLF);
+        sb.append(CRLF);
+        sb.append("    ");
+        sb.append(type.id);
+        sb.append("(String value) {");
+        sb.append(CRLF);
+        sb.append("        this.value = value;");
+        sb.append(CRLF);
+        sb.append("    }");
+        sb.append(CRLF);
+        sb.append(CRLF);
+        sb.append("    @Override");
+        sb.append(CRLF);
+        sb.append("    public String value() {");
+        sb.append(CRLF);
+        sb.append("        return value;");
+        sb.append(CRLF);
+        sb.append("    }");
+        sb.append(CRLF);
+        sb.append(CRLF);
+        sb.append("    @Override");
+        sb.append(CRLF);
+        sb.append("    public String toString() {");
+        sb.append(CRLF);
+        sb.append("        return value;");
+        sb.append(CRLF);
+        sb.append("    }");
+        sb.append(CRLF);
+        sb.append(CRLF);
+        sb.append(createLookup(type.id, "value", "findByValue", type.enums.size()));
+        sb.append("}");
+        return sb;
+    }
+
+    public String getType(Domain domain, Type prop, Type parent) throws Exception {
+        if (prop == null) {
+            throw new Exception("prop is null");
+        }
+        if (prop.target != null) {
+            return getType(domain, prop.target, prop);
+        }
+        if (StringUtils.isNotEmpty(prop.ref)) {
+            throw new Exception("unresolved type reference " + prop.ref);
+        }
+        switch (prop.type) {
+            case OBJECT:
+                if (StringUtils.isNotEmpty(prop.id) && isNotEmpty(prop.properties)) {
+                    return prop.getClassName();
+                } else {
+                    //对于这种情况的object统一处理为Map
+                    return "java.util.Map<String, Object>";
+                }
+            case ARRAY:
+                if (prop.items == null) {
+                    throw new Exception("数组必须有items");
+                }
+                String typeName = "java.util.List<";
+                typeName += getType(domain, prop.items, prop);
+                typeName += ">";
+                return typeName;
+            case STRING:
+                //此处存在枚举的情况
+                if (isNotEmpty(prop.enums)) {
+                    if (StringUtils.isEmpty(prop.id)) {
+                        //枚举
+                        if (StringUtils.isEmpty(parent.id)) {
+                            throw new Exception("parent id is null");
+                        }
+                        Type type = new Type();
+                        type.id = StringUtils.capitalize(parent.id) + StringUtils.capitalize(prop.name);
+                        type.type = TypeType.STRING;
+                        type.enums = prop.enums;
+                        type.domain = domain;
+                        //同一个内联枚举只生成一次
+                        Map<Object, String> enums = inlineEnums.computeIfAbsent(domain.domain, key -> new HashMap<>());
+                        String id = type.id;
+                        String className = enums.get(id);
+                        if (className == null && dedupeTypes) {
+                            //合并到已经生成的同值枚举, key为枚举值列表, 与类名key不会冲突
+                            className = enums.get(prop.enums);
+                            if (className != null) {
+                                dedupedCount.incrementAndGet();
+                                enums.put(id, className);
+                            }
+                        }
+                        if (className != null) {
+                            return className;
+                        }
+                        Type named = dedupeTypes ? sharedTypes.get(domain.domain).get(prop.enums) : null;
+                        if (named != null) {
+                            type.id = named.id;
+                            type.description = named.description;
+                        }
+                        createType(domain, type);
+                        className = type.getPackage() + "." + type.id;
+                        enums.put(id, className);
+                        if (dedupeTypes) {
+                            enums.put(prop.enums, className);
+                        }
+                        return className;
+                    } else {
+                        return prop.getClassName();
+                    }
+                } else if (isBinary(domain, prop, parent)) {
+                    return this.pkg + "." + BINARY_CLASS;
+                } else {
+                    return "String";
+                }
+            case BINARY:
+                return binary ? this.pkg + "." + BINARY_CLASS : "String";
+            case ANY:
+                return "Object";
+            case NUMBER:
+                return "java.math.BigDecimal";
+            case BOOLEAN:
+                return "Boolean";
+            case INTEGER:
+                return "Integer";
+            default:
+                throw new Exception("unknown type");
+        }
+    }
+
+    /**
+     * 找出domain中会被合并的返回值及内联枚举并为它们命名, 类名与createCommand, createEvent及getType中的规则一致
+     */
+    private Map<Object, Type> findSharedTypes(Domain domain, Map<Object, String> namedEnums) {
+        Set<String> names = new HashSet<>();
+        List<Type> owners = new ArrayList<>();
+        if (isNotEmpty(domain.types)) {
+            for (Type type : domain.types) {
+                names.add(type.id);
+                if (type.isObject()) {
+                    owners.add(type);
+                }
+            }
+        }
+        //结构相同的返回值, 只有第一个会生成类
+        Map<String, Type> responses = new LinkedHashMap<>();
+        Map<String, List<String>> responseCommands = new HashMap<>();
+        if (isNotEmpty(domain.commands)) {
+            for (Command command : domain.commands) {
+                if (isNotEmpty(command.parameters)) {
+                    owners.add(owner(domain, StringUtils.capitalize(command.name) + "Request", command.parameters, names));
+                }
+                if (isNotEmpty(command.returns)) {
+                    Type ret = owner(domain, StringUtils.capitalize(command.name) + "Response", command.returns, names);
+                    String key = structureKey(domain, ret);
+                    if (responses.putIfAbsent(key, ret) == null) {
+                        owners.add(ret);
+                    }
+                    responseCommands.computeIfAbsent(key, k -> new ArrayList<>()).add(command.name);
+                }
+            }
+        }
+        if (isNotEmpty(domain.events)) {
+            for (Event event : domain.events) {
+                if (isNotEmpty(event.parameters)) {
+                    String id = StringUtils.removeEndIgnoreCase(StringUtils.capitalize(event.name), "event") + "Event";
+                    owners.add(owner(domain, id, event.parameters, names));
+                }
+            }
+        }
+        Map<Object, Type> shared = new HashMap<>();
+        for (Map.Entry<String, Type> entry : responses.entrySet()) {
+            List<String> commands = responseCommands.get(entry.getKey());
+            if (commands.size() > 1) {
+                StringBuilder name = new StringBuilder();
+                for (Type prop : entry.getValue().properties) {
+                    name.append(StringUtils.capitalize(prop.name));
+                }
+                Type type = new Type();
+                type.id = sharedName(name + "Response", names);
+                type.description = "response shared by " + StringUtils.join(commands, ", ");
+                //返回值中内联枚举的名称以合并后的类名开头
+                entry.getValue().id = type.id;
+                shared.put(entry.getKey(), type);
+            }
+        }
+        //枚举值相同的内联枚举, 与具名枚举相同的直接使用具名枚举
+        Map<Object, Set<String>> enumProps = new LinkedHashMap<>();
+        Map<Object, List<String>> enumOwners = new HashMap<>();
+        for (Type owner : owners) {
+            for (Type prop : owner.properties) {
+                if (prop.target == null && prop.isEnum() && StringUtils.isEmpty(prop.id) && !namedEnums.containsKey(prop.enums)) {
+                    names.add(StringUtils.capitalize(owner.id) + StringUtils.capitalize(prop.name));
+                    enumProps.computeIfAbsent(prop.enums, k -> new LinkedHashSet<>()).add(StringUtils.capitalize(prop.name));
+                    enumOwners.computeIfAbsent(prop.enums, k -> new ArrayList<>()).add(owner.id + "." + prop.name);
+                }
+            }
+        }
+        for (Map.Entry<Object, Set<String>> entry : enumProps.entrySet()) {
+            List<String> props = enumOwners.get(entry.getKey());
+            if (props.size() > 1) {
+                Type type = new Type();
+                type.id = sharedName(StringUtils.join(entry.getValue(), ""), names);
+                type.description = "values shared by " + StringUtils.join(props, ", ");
+                shared.put(entry.getKey(), type);
+            }
+        }
+        return shared;
+    }
+
+    private static Type owner(Domain domain, String id, List<Type> properties, Set<String> names) {
+        Type type = new Type();
+        type.id = id;
+        type.properties = properties;
+        type.type = TypeType.OBJECT;
+        type.domain = domain;
+        names.add(id);
+        return type;
+    }
+
+    /**
+     * 合并后的类名, 与domain中已有的类名冲突时加Shared前缀, 仍然冲突时加序号
+     */
+    private static String sharedName(String name, Set<String> names) {
+        String result = names.contains(name) ? "Shared" + name : name;
+        for (int i = 2; names.contains(result); i++) {
+            result = "Shared" + name + i;
+        }
+        names.add(result);
+        return result;
+    }
+
+    /**
+     * 对象的结构: 属性的名称, 是否可选及类型, 引用统一为Domain.Type, 不包含描述
+     */
+    private String structureKey(Domain domain, Type type) {
+        StringBuilder sb = new StringBuilder();
+        for (Type prop : type.properties) {
+            sb.append(prop.name).append(prop.optional ? "?" : "").append(':');
+            appendStructure(sb, domain, prop, type);
+            sb.append(';');
+        }
+        return sb.toString();
+    }
+
+    private void appendStructure(StringBuilder sb, Domain domain, Type prop, Type parent) {
+        if (prop.target != null) {
+            sb.append(prop.target.qualifiedName);
+            return;
+        }
+        sb.append(prop.type);
+        if (isNotEmpty(prop.enums)) {
+            sb.append(prop.enums);
+        }
+        if (prop.type == TypeType.STRING && isBinary(domain, prop, parent)) {
+            sb.append("(binary)");
+        }
+        if (prop.items != null) {
+            sb.append('<');
+            appendStructure(sb, domain, prop.items, prop);
+            sb.append('>');
+        }
+        if (isNotEmpty(prop.properties)) {
+            sb.append('{').append(structureKey(domain, prop)).append('}');
+        }
+    }
+
+    /**
+     * 开启binary时, 描述中带有base64标记或者在binaryFields中配置的string属性
+     */
+    private boolean isBinary(Domain domain, Type prop, Type parent) {
+        if (!binary) {
+            return false;
+        }
+        if (prop.description != null && prop.description.contains(BASE64_MARKER)) {
+            return true;
         }
-        sb.append(CRLF);
+        return binaryFields != null && parent != null && binaryFields.contains(domain.domain + "." + (parent.sourceId != null ? parent.sourceId : parent.id) + "." + prop.name);
+    }
+
+    public StringBuffer createObject(Domain domain, Type type) throws Exception {
+        boolean lazy = lazyEvents && type.event;
+        if (immutableEntities && !lazy && !type.reusable) {
+            return createImmutableObject(domain, type);
+        }
+        StringBuffer sb = new StringBuffer();
         sb.append("public class ");
-        sb.append(domain.domain);
+        sb.append(type.id);
+        if (lazy) {
+            sb.append(" extends ");
+            sb.append(this.pkg);
+            sb.append(".");
+            sb.append(LAZY_CLASS);
+        }
         sb.append(" {");
         sb.append(CRLF);
         sb.append(CRLF);
-        //属性及构造方法
-
-        String varName;
-        sb.append("    private ");
-        sb.append(connectionClassName);
-        sb.append(" connection;");
-        sb.append(CRLF);
-        sb.append(CRLF);
-        sb.append("    public ");
-        sb.append(domain.domain);
-        sb.append("(");
-        sb.append(connectionClassName);
-        sb.append(" connection");
-        sb.append(") {");
-        sb.append(CRLF);
-        sb.append("        this.connection = connection;");
-        sb.append(CRLF);
-        sb.append("    }");
-        varName = "connection";
-        //接口方法
-        for(Command command : domain.commands) {
-            sb.append(CRLF);
-            sb.append(CRLF);
+        Map<Type, String> typeMap = new HashMap<>();
+        Map<Type, String> fieldTypes = new HashMap<>();
+        //可选的基本类型属性使用位标记是否赋值, 值为该属性在位图中的序号
+        Map<Type, Integer> optionalBits = new HashMap<>();
+        for(Type prop : type.properties) {
             sb.append("    /**");
-            if (StringUtils.isNotEmpty(command.description)) {
+            if (StringUtils.isNotEmpty(prop.description)) {
                 sb.append(CRLF);
                 sb.append("    * ");
-                sb.append(command.description.replaceAll("(\r\n|\n|\r)", " "));
+                sb.append(prop.description.replaceAll("(\r\n|\n|\r)", " "));
             }
-            if (command.experimental) {
-                sb.append(CRLF);
-                sb.append("    * experimental");
+            String typeName = getType(domain, prop, type);
+            typeMap.put(prop, typeName);
+            String fieldType = fieldType(prop, typeName);
+            fieldTypes.put(prop, fieldType);
+            if (prop.optional && isPrimitive(fieldType)) {
+                optionalBits.put(prop, optionalBits.size());
             }
             sb.append(CRLF);
             sb.append("    */");
-            if (command.deprecated) {
+            sb.append(CRLF);
+            sb.append("    private ");
+            sb.append(fieldType);
+            sb.append(" ");
+            sb.append(storageName(type, prop, optionalBits));
+            sb.append(";");
+            sb.append(CRLF);
+            sb.append(CRLF);
+        }
+        for (int i = 0; i < (optionalBits.size() + 63) / 64; i++) {
+            sb.append("    private long optionalBits");
+            sb.append(i);
+            sb.append(";");
+            sb.append(CRLF);
+            sb.append(CRLF);
+        }
+        if (lazy) {
+            sb.append(createLazyFields(type, fieldTypes));
+        }
+        //生成setter, getter
+        for(int i=0; i<type.properties.size(); i++) {
+            Type prop = type.properties.get(i);
+            String typeName = fieldTypes.get(prop);
+            String propName = fieldName(prop);
+            String storage = storageName(type, prop, optionalBits);
+            Integer bit = optionalBits.get(prop);
+            sb.append("    public ");
+            //可复用的请求使用链式setter, fastjson同样识别返回本类型的setter
+            sb.append(type.reusable ? type.id : "void");
+            sb.append(" set");
+            sb.append(StringUtils.capitalize(propName));
+            sb.append(" (");
+            sb.append(typeName);
+            sb.append(" ");
+            sb.append(propName);
+            sb.append(") {");
+            sb.append(CRLF);
+            sb.append("        this.");
+            sb.append(storage);
+            sb.append(" = ");
+            sb.append(propName);
+            sb.append(";");
+            sb.append(CRLF);
+            if (bit != null) {
+                sb.append("        this.");
+                sb.append(optionalBit(bit));
+                sb.append(";");
                 sb.append(CRLF);
-                sb.append("    @java.lang.Deprecated");
             }
+            if (lazy) {
+                sb.append("        this.");
+                sb.append(bitField("pendingBits", i));
+                sb.append(" &= ~");
+                sb.append(bitMask(i));
+                sb.append(";");
+                sb.append(CRLF);
+            }
+            if (type.reusable) {
+                sb.append("        return this;");
+                sb.append(CRLF);
+            }
+            sb.append("    }");
+            sb.append(CRLF);
             sb.append(CRLF);
+
+            if (bit != null) {
+                sb.append("    /**");
+                sb.append(CRLF);
+                sb.append("    * boxed ");
+                sb.append(propName);
+                sb.append(", null when absent, kept for compatibility, hot paths should use has");
+                sb.append(StringUtils.capitalize(propName));
+                sb.append("() and get");
+                sb.append(StringUtils.capitalize(propName));
+                sb.append("Value()");
+                sb.append(CRLF);
+                sb.append("    */");
+                sb.append(CRLF);
+            }
             sb.append("    public ");
-            Type ret = null;
-            Type param = null;
-            if (isEmpty(command.returns)) {
-                sb.append(futureClassName);
-                sb.append("<?>");
+            sb.append(bit != null ? boxed(typeName) : typeName);
+            sb.append(" get");
+            sb.append(StringUtils.capitalize(propName));
+            sb.append("() {");
+            sb.append(CRLF);
+            if (lazy && bit == null) {
+                sb.append("        load");
+                sb.append(StringUtils.capitalize(propName));
+                sb.append("();");
+                sb.append(CRLF);
+            }
+            if (bit != null) {
+                //未赋值的可选属性返回null, 保持与包装类型相同的语义
+                sb.append("        return has");
+                sb.append(StringUtils.capitalize(propName));
+                sb.append("() ? this.");
+                sb.append(storage);
+                sb.append(" : null;");
             } else {
-                //生成返回值结构体
-                ret = new Type();
-                ret.id = StringUtils.capitalize(command.name) + "Response";
-                ret.properties = command.returns;
-                ret.type = TypeType.OBJECT;
-                ret.domain = domain;
-                createType(domain, ret);
-                sb.append(futureClassName);
-                sb.append("<");
-                sb.append(ret.getPackage() + "." + ret.id);
-                sb.append(">");
+                sb.append("        return this.");
+                sb.append(propName);
+                sb.append(";");
+            }
+            sb.append(CRLF);
+            sb.append("    }");
+            sb.append(CRLF);
+            sb.append(CRLF);
+
+            //同一个类中已有xxxValue属性时不生成, 避免与它的getter冲突
+            if (bit != null && !storage.equals(propName)) {
+                appendLines(sb,
+                        "    /**",
+                        "    * " + propName + " without boxing, " + ("boolean".equals(typeName) ? "false" : "0") + " when absent",
+                        "    */",
+                        "    @com.alibaba.fastjson.annotation.JSONField(serialize = false, deserialize = false)",
+                        "    public " + typeName + " get" + StringUtils.capitalize(propName) + "Value() {");
+                if (lazy) {
+                    sb.append("        load");
+                    sb.append(StringUtils.capitalize(propName));
+                    sb.append("();");
+                    sb.append(CRLF);
+                }
+                appendLines(sb,
+                        "        return this." + storage + ";",
+                        "    }",
+                        "");
+            }
+            if (bit != null) {
+                sb.append("    public boolean has");
+                sb.append(StringUtils.capitalize(propName));
+                sb.append("() {");
+                sb.append(CRLF);
+                if (lazy) {
+                    sb.append("        load");
+                    sb.append(StringUtils.capitalize(propName));
+                    sb.append("();");
+                    sb.append(CRLF);
+                }
+                sb.append("        return (this.");
+                sb.append(bitField("optionalBits", bit));
+                sb.append(" & ");
+                sb.append(bitMask(bit));
+                sb.append(") != 0;");
+                sb.append(CRLF);
+                sb.append("    }");
+                sb.append(CRLF);
+                sb.append(CRLF);
+            }
+        }
+        if (lazy) {
+            sb.append(createLazyMethods(type, fieldTypes, optionalBits));
+        }
+        if (type.reusable) {
+            sb.append(createReset(type, fieldTypes, optionalBits));
+        }
+        //生成constructor
+        sb.append("    public ");
+        sb.append(type.id);
+        sb.append("(");
+        boolean hasOptional = false;
+        int argCount = 0;
+        int optionalArgCount = 0;
+        for(int i=0; i<type.properties.size(); i++) {
+            Type prop = type.properties.get(i);
+            argCount++;
+            if (prop.optional) {
+                optionalArgCount++;
+                hasOptional = true;
+            }
+            if (i > 0) {
+                sb.append(", ");
             }
+            String typeName = fieldType(prop, typeMap.get(prop));
+            sb.append(optionalBits.containsKey(prop) ? boxed(typeName) : typeName);
             sb.append(" ");
-            sb.append(command.name);
-            sb.append("(");
-            //处理参数
-            if (isNotEmpty(command.parameters)) {
-                param = new Type();
-                param.id = StringUtils.capitalize(command.name) + "Request";
-                param.properties = command.parameters;
-                param.type = TypeType.OBJECT;
-                param.domain = domain;
-                createType(domain, param);
-                sb.append(param.getPackage() + "." + param.id + " request");
+            sb.append(fieldName(prop));
+        }
+        sb.append(") {");
+        sb.append(CRLF);
+        for(Type prop : type.properties) {
+            Integer bit = optionalBits.get(prop);
+            if (bit != null) {
+                sb.append("        if (");
+                sb.append(fieldName(prop));
+                sb.append(" != null) {");
+                sb.append(CRLF);
+                sb.append("            this.");
+                sb.append(storageName(type, prop, optionalBits));
+                sb.append(" = ");
+                sb.append(fieldName(prop));
+                sb.append(";");
+                sb.append(CRLF);
+                sb.append("            this.");
+                sb.append(optionalBit(bit));
+                sb.append(";");
+                sb.append(CRLF);
+                sb.append("        }");
+                sb.append(CRLF);
+                continue;
             }
-            sb.append(")");
-            sb.append(" {");
+            sb.append("        this.");
+            sb.append(fieldName(prop));
+            sb.append(" = ");
+            sb.append(fieldName(prop));
+            sb.append(";");
             sb.append(CRLF);
+        }
+        sb.append("    }");
+        sb.append(CRLF);
+        sb.append(CRLF);
 
-            if (isNotEmpty(command.returns)) {
-                sb.append("        return ");
-                sb.append(varName);
-                sb.append(".send(");
-                sb.append("\"");
-                sb.append(domain.domain);
-                sb.append(".");
-                sb.append(command.name);
-                sb.append("\"");
-                sb.append(", ");
-                if (isNotEmpty(command.parameters)) {
-                    sb.append("request, ");
-                } else {
-                    sb.append("null, ");
+        //生成可选参数的constructor
+        if (hasOptional) {
+            sb.append("    public ");
+            sb.append(type.id);
+            sb.append("(");
+            int pNum = 0;
+            for (Type prop : type.properties) {
+                if (prop.optional) {
+                    continue;
                 }
-                sb.append(ret.getPackage() + "." + ret.id + ".class");
-                sb.append(")");
-            } else {
-                sb.append("        return ");
-                sb.append(varName);
-                sb.append(".send(");
-                sb.append("\"");
-                sb.append(domain.domain);
-                sb.append(".");
-                sb.append(command.name);
-                sb.append("\"");
-                sb.append(", ");
-                if (isNotEmpty(command.parameters)) {
-                    sb.append("request");
+                if (pNum > 0) {
+                    sb.append(", ");
+                }
+                String typeName = fieldType(prop, typeMap.get(prop));
+                sb.append(typeName);
+                sb.append(" ");
+                sb.append(fieldName(prop));
+                pNum++;
+            }
+            sb.append(") {");
+            sb.append(CRLF);
+            for (Type prop : type.properties) {
+                if (optionalBits.containsKey(prop)) {
+                    //基本类型保持默认值, 位标记为未赋值
+                    continue;
+                }
+                sb.append("        this.");
+                sb.append(fieldName(prop));
+                if (prop.optional) {
+                    sb.append(" = null");
                 } else {
-                    sb.append("null");
+                    sb.append(" = ");
+                    sb.append(fieldName(prop));
                 }
-                sb.append(")");
+                sb.append(";");
+                sb.append(CRLF);
+            }
+            sb.append("    }");
+            sb.append(CRLF);
+            sb.append(CRLF);
+        }
+        if (argCount > 0 && argCount != optionalArgCount) {
+            //生成无参constructor
+            sb.append("    public ");
+            sb.append(type.id);
+            sb.append("() {");
+            sb.append(CRLF);
+            sb.append("    }");
+            sb.append(CRLF);
+            sb.append(CRLF);
+        }
+        if (codecs) {
+            sb.append(createCodec(type, fieldTypes, optionalBits, lazy, false));
+        }
+        sb.append("}");
+        return sb;
+    }
+
+    /**
+     * 生成不可变的实体类, 可选属性使用包装类型, List及Map属性包装为不可修改的集合
+     */
+    private StringBuffer createImmutableObject(Domain domain, Type type) throws Exception {
+        StringBuffer sb = new StringBuffer();
+        //fastjson的creator构造方法从map转换时不转换参数类型, 通过Builder反序列化, JSONObject.toJavaObject也可以使用
+        sb.append("@com.alibaba.fastjson.annotation.JSONType(builder = ");
+        sb.append(type.id);
+        sb.append(".Builder.class)");
+        sb.append(CRLF);
+        sb.append("public final class ");
+        sb.append(type.id);
+        sb.append(" {");
+        sb.append(CRLF);
+        sb.append(CRLF);
+        Map<Type, String> fieldTypes = new LinkedHashMap<>();
+        for (Type prop : type.properties) {
+            if ("hashCode".equals(fieldName(prop))) {
+                throw new MojoFailureException("property hashCode of " + domain.domain + "." + type.id + " conflicts with immutableEntities");
+            }
+            String fieldType = fieldType(prop, getType(domain, prop, type));
+            if (prop.optional) {
+                fieldType = boxed(fieldType);
+            }
+            fieldTypes.put(prop, fieldType);
+            sb.append("    /**");
+            if (StringUtils.isNotEmpty(prop.description)) {
+                sb.append(CRLF);
+                sb.append("    * ");
+                sb.append(prop.description.replaceAll("(\r\n|\n|\r)", " "));
             }
+            sb.append(CRLF);
+            sb.append("    */");
+            sb.append(CRLF);
+            sb.append("    private final ");
+            sb.append(fieldType);
+            sb.append(" ");
+            sb.append(fieldName(prop));
             sb.append(";");
             sb.append(CRLF);
-            sb.append("    }");
             sb.append(CRLF);
         }
+        sb.append("    private final int hashCode;");
         sb.append(CRLF);
-        sb.append("}");
-
-        writeFile(dirName + "/" + domain.domain + ".java", sb);
-    }
-
-    public static Document readProtocol(File file) throws Exception {
-        InputStream is = new FileInputStream(file);
-        StringBuffer sb = new StringBuffer();
-        byte[] bytes;
-        while (true) {
-            bytes = new byte[8192];
-            int size = is.read(bytes);
-            if (size == -1) {
-                break;
+        sb.append(CRLF);
+        //构造方法, 只由Builder调用
+        sb.append("    private ");
+        sb.append(type.id);
+        sb.append("(");
+        int pNum = 0;
+        for (Map.Entry<Type, String> entry : fieldTypes.entrySet()) {
+            if (pNum++ > 0) {
+                sb.append(", ");
             }
-            sb.append(new String(bytes, 0, size));
+            sb.append(entry.getValue());
+            sb.append(" ");
+            sb.append(fieldName(entry.getKey()));
         }
-        return JSON.parseObject(sb.toString(), Document.class, Feature.DisableCircularReferenceDetect);
-    }
-
-    public void createType(Domain domain, Type type) throws Exception {
-        if (!(type.isEnum() || type.isObject())) {
-            //不是枚举, 也不是类, 不需要生成
-            return;
+        sb.append(") {");
+        sb.append(CRLF);
+        for (Map.Entry<Type, String> entry : fieldTypes.entrySet()) {
+            String name = fieldName(entry.getKey());
+            sb.append("        this.");
+            sb.append(name);
+            sb.append(" = ");
+            sb.append(unmodifiable(entry.getValue(), name));
+            sb.append(";");
+            sb.append(CRLF);
         }
-        String dirName = baseDir + "/" + type.getPackage().replace(".", "/");
-        File dir = new File(dirName);
-        if (!dir.exists()) {
-            dir.mkdirs();
+        //参数与属性同名, 局部变量只使用hashCode
+        sb.append("        int hashCode = 1;");
+        sb.append(CRLF);
+        for (Map.Entry<Type, String> entry : fieldTypes.entrySet()) {
+            sb.append("        hashCode = 31 * hashCode + ");
+            sb.append(hashExpr(entry.getValue(), "this." + fieldName(entry.getKey())));
+            sb.append(";");
+            sb.append(CRLF);
         }
-        StringBuffer sb = new StringBuffer();
-        sb.append("package ");
-        sb.append(type.getPackage());
-        sb.append(";");
+        sb.append("        this.hashCode = hashCode;");
         sb.append(CRLF);
+        sb.append("    }");
         sb.append(CRLF);
-        sb.append("/**");
-        if (StringUtils.isNotEmpty(type.description)) {
+        sb.append(CRLF);
+        //getter
+        for (Map.Entry<Type, String> entry : fieldTypes.entrySet()) {
+            String name = fieldName(entry.getKey());
+            sb.append("    public ");
+            sb.append(entry.getValue());
+            sb.append(" get");
+            sb.append(StringUtils.capitalize(name));
+            sb.append("() {");
+            sb.append(CRLF);
+            sb.append("        return this.");
+            sb.append(name);
+            sb.append(";");
+            sb.append(CRLF);
+            sb.append("    }");
+            sb.append(CRLF);
             sb.append(CRLF);
-            sb.append("* ");
-            sb.append(type.description.replaceAll("(\r\n|\n|\r)", " "));
         }
-        if (domain.experimental) {
+        appendLines(sb,
+                "    public static Builder builder() {",
+                "        return new Builder();",
+                "    }",
+                "",
+                "    public Builder toBuilder() {",
+                "        return new Builder(this);",
+                "    }",
+                "",
+                "    @Override",
+                "    public boolean equals(Object o) {",
+                "        if (this == o) {",
+                "            return true;",
+                "        }",
+                "        if (!(o instanceof " + type.id + ")) {",
+                "            return false;",
+                "        }",
+                "        " + type.id + " other = (" + type.id + ") o;");
+        sb.append("        return this.hashCode == other.hashCode");
+        for (Map.Entry<Type, String> entry : fieldTypes.entrySet()) {
+            String name = fieldName(entry.getKey());
             sb.append(CRLF);
-            sb.append("* experimental");
+            sb.append("                && ");
+            sb.append(equalsExpr(entry.getValue(), "this." + name, "other." + name));
         }
+        sb.append(";");
         sb.append(CRLF);
-        sb.append("*/");
+        appendLines(sb,
+                "    }",
+                "",
+                "    @Override",
+                "    public int hashCode() {",
+                "        return this.hashCode;",
+                "    }",
+                "",
+                "    @com.alibaba.fastjson.annotation.JSONPOJOBuilder(withPrefix = \"set\")",
+                "    public static final class Builder {",
+                "");
+        for (Map.Entry<Type, String> entry : fieldTypes.entrySet()) {
+            sb.append("        private ");
+            sb.append(entry.getValue());
+            sb.append(" ");
+            sb.append(fieldName(entry.getKey()));
+            sb.append(";");
+            sb.append(CRLF);
+            sb.append(CRLF);
+        }
+        appendLines(sb,
+                "        public Builder() {",
+                "        }",
+                "",
+                "        private Builder(" + type.id + " source) {");
+        for (Type prop : fieldTypes.keySet()) {
+            sb.append("            this.");
+            sb.append(fieldName(prop));
+            sb.append(" = source.");
+            sb.append(fieldName(prop));
+            sb.append(";");
+            sb.append(CRLF);
+        }
+        appendLines(sb,
+                "        }",
+                "");
+        for (Map.Entry<Type, String> entry : fieldTypes.entrySet()) {
+            String name = fieldName(entry.getKey());
+            sb.append("        @com.alibaba.fastjson.annotation.JSONField(name = \"");
+            sb.append(entry.getKey().name);
+            sb.append("\")");
+            sb.append(CRLF);
+            sb.append("        public Builder set");
+            sb.append(StringUtils.capitalize(name));
+            sb.append("(");
+            sb.append(entry.getValue());
+            sb.append(" ");
+            sb.append(name);
+            sb.append(") {");
+            sb.append(CRLF);
+            sb.append("            this.");
+            sb.append(name);
+            sb.append(" = ");
+            sb.append(name);
+            sb.append(";");
+            sb.append(CRLF);
+            sb.append("            return this;");
+            sb.append(CRLF);
+            sb.append("        }");
+            sb.append(CRLF);
+            sb.append(CRLF);
+        }
+        sb.append("        public ");
+        sb.append(type.id);
+        sb.append(" build() {");
+        sb.append(CRLF);
+        sb.append("            return new ");
+        sb.append(type.id);
+        sb.append("(");
+        pNum = 0;
+        for (Type prop : fieldTypes.keySet()) {
+            if (pNum++ > 0) {
+                sb.append(", ");
+            }
+            sb.append("this.");
+            sb.append(fieldName(prop));
+        }
+        sb.append(");");
         sb.append(CRLF);
+        appendLines(sb,
+                "        }",
+                "    }",
+                "");
+        if (codecs) {
+            sb.append(createCodec(type, fieldTypes, new HashMap<>(), false, true));
+        }
+        sb.append("}");
+        return sb;
+    }
 
-        if (type.isEnum()) {
-            sb.append(createEnum(domain, type));
-        } else {
-            sb.append(createObject(domain, type));
+    private static String unmodifiable(String typeName, String expr) {
+        if (listItemType(typeName) != null) {
+            return expr + " != null ? java.util.Collections.unmodifiableList(" + expr + ") : null";
         }
+        if (typeName.startsWith("java.util.Map<")) {
+            return expr + " != null ? java.util.Collections.unmodifiableMap(" + expr + ") : null";
+        }
+        return expr;
+    }
 
-        writeFile(dirName + "/" + type.id + ".java", sb);
+    private static String hashExpr(String typeName, String expr) {
+        switch (typeName) {
+            case "double":
+                return "Double.hashCode(" + expr + ")";
+            case "int":
+                return "Integer.hashCode(" + expr + ")";
+            case "boolean":
+                return "Boolean.hashCode(" + expr + ")";
+            default:
+                return "java.util.Objects.hashCode(" + expr + ")";
+        }
     }
 
-    public StringBuffer createEnum(Domain domain, Type type) {
+    private static String equalsExpr(String typeName, String expr, String other) {
+        switch (typeName) {
+            case "double":
+                return "Double.compare(" + expr + ", " + other + ") == 0";
+            case "int":
+            case "boolean":
+                return expr + " == " + other;
+            default:
+                return "java.util.Objects.equals(" + expr + ", " + other + ")";
+        }
+    }
+
+    /**
+     * 生成实体类内部的fastjson编解码器, 直接读写字段, 不依赖反射及运行时生成的ASM类
+     */
+    private StringBuffer createCodec(Type type, Map<Type, String> fieldTypes, Map<Type, Integer> optionalBits, boolean lazy, boolean immutable) {
         StringBuffer sb = new StringBuffer();
-        sb.append("public enum ");
-        sb.append(type.id);
-        sb.append(" implements ");
-        sb.append(this.pkg);
-        sb.append(".");
-        sb.append(ENUM_CLASS);
-        sb.append(" {");
+        //继承BeanCodec, 注册后JSONObject.toJavaObject仍然可以从map转换
+        appendLines(sb,
+                "    public static final class Codec extends " + this.pkg + "." + CODECS_CLASS + ".BeanCodec {",
+                "",
+                "        public static final Codec INSTANCE = new Codec();",
+                "",
+                "        private Codec() {",
+                "            super(" + type.id + ".class);",
+                "        }",
+                "");
+        sb.append("        @Override");
         sb.append(CRLF);
+        sb.append("        public void write(com.alibaba.fastjson.serializer.JSONSerializer serializer, Object object, Object fieldName, java.lang.reflect.Type fieldType, int features) throws java.io.IOException {");
         sb.append(CRLF);
-        for(String e : type.enums) {
-            String name = e.toUpperCase().replaceAll("[^a-zA-Z0-9_]", "_");
-            sb.append("    ");
-            sb.append(name);
-            sb.append("(\"");
-            sb.append(e);
-            sb.append("\")");
-            sb.append(",");
-            sb.append(CRLF);
-        }
-        sb.append("    ;");
+        sb.append("            com.alibaba.fastjson.serializer.SerializeWriter out = serializer.out;");
         sb.append(CRLF);
+        sb.append("            if (object == null) {");
         sb.append(CRLF);
-        sb.append("    private String value;");
+        sb.append("                out.writeNull();");
         sb.append(CRLF);
+        sb.append("                return;");
         sb.append(CRLF);
-        sb.append("    ");
+        sb.append("            }");
+        sb.append(CRLF);
+        sb.append("            ");
         sb.append(type.id);
-        sb.append("(String value) {");
+        sb.append(" bean = (");
+        sb.append(type.id);
+        sb.append(") object;");
         sb.append(CRLF);
-        sb.append("        this.value = value;");
+        if (lazy) {
+            sb.append("            bean.decodeAll();");
+            sb.append(CRLF);
+        }
+        sb.append("            char sep = '{';");
         sb.append(CRLF);
-        sb.append("    }");
+        for (Type prop : type.properties) {
+            String fieldType = fieldTypes.get(prop);
+            String field = "bean." + storageName(type, prop, optionalBits);
+            String indent = "            ";
+            if (optionalBits.containsKey(prop)) {
+                sb.append(indent);
+                sb.append("if (bean.has");
+                sb.append(StringUtils.capitalize(fieldName(prop)));
+                sb.append("()) {");
+                sb.append(CRLF);
+                indent += "    ";
+            } else if (!isPrimitive(fieldType)) {
+                sb.append(indent);
+                sb.append("if (");
+                sb.append(field);
+                sb.append(" != null) {");
+                sb.append(CRLF);
+                indent += "    ";
+            }
+            sb.append(indent);
+            sb.append("out.write(sep);");
+            sb.append(CRLF);
+            sb.append(indent);
+            sb.append("out.writeFieldName(\"");
+            sb.append(prop.name);
+            sb.append("\");");
+            sb.append(CRLF);
+            appendWriteValue(sb, indent, field, fieldType, 0);
+            sb.append(indent);
+            sb.append("sep = ',';");
+            sb.append(CRLF);
+            if (indent.length() > 12) {
+                sb.append("            }");
+                sb.append(CRLF);
+            }
+        }
+        sb.append("            if (sep == '{') {");
         sb.append(CRLF);
+        sb.append("                out.write('{');");
         sb.append(CRLF);
-        sb.append("    @Override");
+        sb.append("            }");
         sb.append(CRLF);
-        sb.append("    public String value() {");
+        sb.append("            out.write('}');");
         sb.append(CRLF);
-        sb.append("        return value;");
+        sb.append("        }");
         sb.append(CRLF);
-        sb.append("    }");
         sb.append(CRLF);
+        String codecs = this.pkg + "." + CODECS_CLASS;
+        sb.append("        @Override");
         sb.append(CRLF);
-        sb.append("    @Override");
+        sb.append("        @SuppressWarnings(\"unchecked\")");
         sb.append(CRLF);
-        sb.append("    public String toString() {");
+        sb.append("        public <T> T deserialze(com.alibaba.fastjson.parser.DefaultJSONParser parser, java.lang.reflect.Type type, Object fieldName) {");
         sb.append(CRLF);
-        sb.append("        return value;");
+        sb.append("            if (!");
+        sb.append(codecs);
+        sb.append(".startObject(parser)) {");
         sb.append(CRLF);
-        sb.append("    }");
+        sb.append("                return null;");
         sb.append(CRLF);
+        sb.append("            }");
         sb.append(CRLF);
-        sb.append("    public static ");
-        sb.append(type.id);
-        sb.append(" findByValue(String value) {");
+        //不可变类先读入Builder, 最后一次构造
+        String beanClass = immutable ? type.id + ".Builder" : type.id;
+        sb.append("            ");
+        sb.append(beanClass);
+        sb.append(" bean = new ");
+        sb.append(beanClass);
+        sb.append("();");
         sb.append(CRLF);
-        sb.append("        for(");
-        sb.append(type.id);
-        sb.append(" val : values()) {");
+        sb.append("            for (String name = ");
+        sb.append(codecs);
+        sb.append(".nextField(parser); name != null; name = ");
+        sb.append(codecs);
+        sb.append(".nextField(parser)) {");
         sb.append(CRLF);
-        sb.append("            if (val.value.equals(value)) return val;");
+        sb.append("                switch (name) {");
         sb.append(CRLF);
-        sb.append("        }");
+        for (Type prop : type.properties) {
+            String fieldType = fieldTypes.get(prop);
+            sb.append("                    case \"");
+            sb.append(prop.name);
+            sb.append("\": {");
+            sb.append(CRLF);
+            String value = appendReadValue(sb, "                        ", fieldType, 0);
+            sb.append("                        bean.set");
+            sb.append(StringUtils.capitalize(fieldName(prop)));
+            sb.append("(");
+            sb.append(value);
+            sb.append(");");
+            sb.append(CRLF);
+            sb.append("                        break;");
+            sb.append(CRLF);
+            sb.append("                    }");
+            sb.append(CRLF);
+        }
+        sb.append("                    default:");
         sb.append(CRLF);
-        sb.append("        return null;");
+        sb.append("                        parser.parse();");
         sb.append(CRLF);
-        sb.append("    }");
+        sb.append("                }");
         sb.append(CRLF);
-        sb.append("}");
-        return sb;
-    }
-
-    public String getType(Domain domain, Type prop, Type parent) throws Exception {
-        if (prop == null) {
-            throw new Exception("prop is null");
-        }
-        if (StringUtils.isNotEmpty(prop.ref)) {
-            String[] ref = prop.ref.split("\\.");
-            String pkg = ref.length == 2 ? ref[0] : domain.domain;
-            String cls = ref.length == 2 ? ref[1] : ref[0];
-            if (!typeMap.containsKey(pkg + "." + cls)) {
-                throw new Exception("未知的引用");
-            }
-            return getType(domain, typeMap.get(pkg + "." + cls), prop);
-        }
-        switch (prop.type) {
-            case OBJECT:
-                if (StringUtils.isNotEmpty(prop.id) && isNotEmpty(prop.properties)) {
-                    return prop.getPackage() + "." + prop.id;
-                } else {
-                    //对于这种情况的object统一处理为Map
-                    return "java.util.Map<String, Object>";
-                }
-            case ARRAY:
-                if (prop.items == null) {
-                    throw new Exception("数组必须有items");
-                }
-                String typeName = "java.util.List<";
-                typeName += getType(domain, prop.items, prop);
-                typeName += ">";
-                return typeName;
-            case STRING:
-                //此处存在枚举的情况
-                if (isNotEmpty(prop.enums)) {
-                    if (StringUtils.isEmpty(prop.id)) {
-                        //枚举
-                        if (StringUtils.isEmpty(parent.id)) {
-                            throw new Exception("parent id is null");
-                        }
-                        Type type = new Type();
-                        type.id = StringUtils.capitalize(parent.id) + StringUtils.capitalize(prop.name);
-                        type.type = TypeType.STRING;
-                        type.enums = prop.enums;
-                        type.domain = domain;
-                        createType(domain, type);
-                        return type.getPackage() + "." + type.id;
-                    } else {
-                        return prop.getPackage() + "." + prop.id;
-                    }
-                } else {
-                    return "String";
-                }
-            case ANY:
-                return "Object";
-            case NUMBER:
-                return "java.math.BigDecimal";
-            case BOOLEAN:
-                return "Boolean";
-            case INTEGER:
-                return "Integer";
-            default:
-                throw new Exception("unknown type");
-        }
-    }
-
-    public StringBuffer createObject(Domain domain, Type type) throws Exception {
-        StringBuffer sb = new StringBuffer();
-        sb.append("public class ");
-        sb.append(type.id);
-        sb.append(" {");
+        sb.append("            }");
         sb.append(CRLF);
+        sb.append(immutable ? "            return (T) bean.build();" : "            return (T) bean;");
         sb.append(CRLF);
-        Map<Type, String> typeMap = new HashMap<>();
-        for(Type prop : type.properties) {
-            sb.append("    /**");
-            if (StringUtils.isNotEmpty(prop.description)) {
-                sb.append(CRLF);
-                sb.append("    * ");
-                sb.append(prop.description.replaceAll("(\r\n|\n|\r)", " "));
-            }
-            String typeName = getType(domain, prop, type);
-            typeMap.put(prop, typeName);
+        sb.append("        }");
+        sb.append(CRLF);
+        sb.append(CRLF);
+        sb.append("    }");
+        sb.append(CRLF);
+        sb.append(CRLF);
+        return sb;
+    }
+
+    private boolean isBinaryType(String typeName) {
+        return typeName.equals(this.pkg + "." + BINARY_CLASS);
+    }
+
+    private boolean isEnumType(String typeName) {
+        return typeName.startsWith(this.pkg + ".constant.");
+    }
+
+    private boolean isEntityType(String typeName) {
+        return typeName.startsWith(this.pkg + ".entity.");
+    }
+
+    private static String listItemType(String typeName) {
+        if (typeName.startsWith("java.util.List<") && typeName.endsWith(">")) {
+            return typeName.substring("java.util.List<".length(), typeName.length() - 1);
+        }
+        return null;
+    }
+
+    private void appendWriteValue(StringBuffer sb, String indent, String expr, String typeName, int depth) {
+        String itemType = listItemType(typeName);
+        if (itemType != null) {
+            String index = "i" + depth;
+            String item = "e" + depth;
+            sb.append(indent);
+            sb.append("out.write('[');");
             sb.append(CRLF);
-            sb.append("    */");
+            sb.append(indent);
+            sb.append("for (int ");
+            sb.append(index);
+            sb.append(" = 0; ");
+            sb.append(index);
+            sb.append(" < ");
+            sb.append(expr);
+            sb.append(".size(); ");
+            sb.append(index);
+            sb.append("++) {");
             sb.append(CRLF);
-            sb.append("    private ");
-            sb.append(typeName);
-            sb.append(" ");
-            sb.append(prop.name.equals("this") ? "self" : prop.name);
-            sb.append(";");
+            sb.append(indent);
+            sb.append("    if (");
+            sb.append(index);
+            sb.append(" > 0) {");
             sb.append(CRLF);
+            sb.append(indent);
+            sb.append("        out.write(',');");
             sb.append(CRLF);
-        }
-        //生成setter, getter
-        for(Type prop : type.properties) {
-            String typeName = getType(domain, prop, type);
-            String propName = prop.name.equals("this") ? "self" : prop.name;
-            sb.append("    public void set");
-            sb.append(StringUtils.capitalize(propName));
-            sb.append(" (");
-            sb.append(typeName);
-            sb.append(" ");
-            sb.append(propName);
-            sb.append(") {");
+            sb.append(indent);
+            sb.append("    }");
             sb.append(CRLF);
-            sb.append("        this.");
-            sb.append(propName);
+            sb.append(indent);
+            sb.append("    ");
+            sb.append(itemType);
+            sb.append(" ");
+            sb.append(item);
             sb.append(" = ");
-            sb.append(propName);
-            sb.append(";");
+            sb.append(expr);
+            sb.append(".get(");
+            sb.append(index);
+            sb.append(");");
+            sb.append(CRLF);
+            sb.append(indent);
+            sb.append("    if (");
+            sb.append(item);
+            sb.append(" == null) {");
+            sb.append(CRLF);
+            sb.append(indent);
+            sb.append("        out.writeNull();");
             sb.append(CRLF);
+            sb.append(indent);
+            sb.append("        continue;");
+            sb.append(CRLF);
+            sb.append(indent);
             sb.append("    }");
             sb.append(CRLF);
+            appendWriteValue(sb, indent + "    ", item, itemType, depth + 1);
+            sb.append(indent);
+            sb.append("}");
+            sb.append(CRLF);
+            sb.append(indent);
+            sb.append("out.write(']');");
             sb.append(CRLF);
+            return;
+        }
+        sb.append(indent);
+        switch (typeName) {
+            case "String":
+                sb.append("out.writeString(");
+                sb.append(expr);
+                sb.append(");");
+                break;
+            case "Integer":
+            case "int":
+                sb.append("out.writeInt(");
+                sb.append(expr);
+                sb.append(");");
+                break;
+            case "Boolean":
+            case "boolean":
+                sb.append("out.write(");
+                sb.append(expr);
+                sb.append(");");
+                break;
+            case "double":
+                sb.append("out.writeDouble(");
+                sb.append(expr);
+                sb.append(", false);");
+                break;
+            case "java.math.BigDecimal":
+                sb.append("out.write(");
+                sb.append(expr);
+                sb.append(".toString());");
+                break;
+            default:
+                if (isBinaryType(typeName)) {
+                    sb.append(typeName);
+                    sb.append(".Codec.INSTANCE.write(serializer, ");
+                    sb.append(expr);
+                    sb.append(", null, null, 0);");
+                } else if (isEnumType(typeName)) {
+                    sb.append("out.writeString(");
+                    sb.append(expr);
+                    sb.append(".value());");
+                } else if (isEntityType(typeName)) {
+                    sb.append(typeName);
+                    sb.append(".Codec.INSTANCE.write(serializer, ");
+                    sb.append(expr);
+                    sb.append(", null, null, 0);");
+                } else {
+                    sb.append("serializer.write(");
+                    sb.append(expr);
+                    sb.append(");");
+                }
+        }
+        sb.append(CRLF);
+    }
 
-            sb.append("    public ");
+    /**
+     * 生成读取一个值的代码, 数组需要先生成循环语句
+     * @return 读取到的值的表达式
+     */
+    private String appendReadValue(StringBuffer sb, String indent, String typeName, int depth) {
+        String codecs = this.pkg + "." + CODECS_CLASS;
+        String itemType = listItemType(typeName);
+        if (itemType != null) {
+            String list = "l" + depth;
+            sb.append(indent);
             sb.append(typeName);
-            sb.append(" get");
-            sb.append(StringUtils.capitalize(propName));
-            sb.append("() {");
+            sb.append(" ");
+            sb.append(list);
+            sb.append(" = null;");
             sb.append(CRLF);
-            sb.append("        return this.");
-            sb.append(propName);
-            sb.append(";");
+            sb.append(indent);
+            sb.append("if (");
+            sb.append(codecs);
+            sb.append(".startArray(parser)) {");
+            sb.append(CRLF);
+            sb.append(indent);
+            sb.append("    ");
+            sb.append(list);
+            sb.append(" = new java.util.ArrayList<>();");
+            sb.append(CRLF);
+            sb.append(indent);
+            sb.append("    while (");
+            sb.append(codecs);
+            sb.append(".nextElement(parser)) {");
             sb.append(CRLF);
+            String item = appendReadValue(sb, indent + "        ", itemType, depth + 1);
+            sb.append(indent);
+            sb.append("        ");
+            sb.append(list);
+            sb.append(".add(");
+            sb.append(item);
+            sb.append(");");
+            sb.append(CRLF);
+            sb.append(indent);
             sb.append("    }");
             sb.append(CRLF);
+            sb.append(indent);
+            sb.append("}");
             sb.append(CRLF);
+            return list;
         }
-        //生成constructor
+        switch (typeName) {
+            case "String":
+                return codecs + ".readString(parser)";
+            case "Integer":
+                return codecs + ".readInteger(parser)";
+            case "int":
+                return codecs + ".readIntValue(parser)";
+            case "Boolean":
+                return codecs + ".readBoolean(parser)";
+            case "boolean":
+                return codecs + ".readBooleanValue(parser)";
+            case "double":
+                return codecs + ".readDoubleValue(parser)";
+            case "java.math.BigDecimal":
+                return codecs + ".readBigDecimal(parser)";
+            case "java.util.Map<String, Object>":
+                return codecs + ".readMap(parser)";
+            case "Object":
+                return "parser.parse()";
+            default:
+                if (isBinaryType(typeName)) {
+                    return typeName + ".Codec.INSTANCE.deserialze(parser, null, null)";
+                } else if (isEnumType(typeName)) {
+                    return typeName + ".findByValue(" + codecs + ".readString(parser))";
+                } else if (isEntityType(typeName)) {
+                    return typeName + ".Codec.INSTANCE.deserialze(parser, " + typeName + ".class, null)";
+                } else {
+                    return "parser.parseObject(" + typeName + ".class)";
+                }
+        }
+    }
+
+    private static String fieldName(Type prop) {
+        return prop.name.equals("this") ? "self" : prop.name;
+    }
+
+    /**
+     * 属性在类中的字段名, 位标记的可选基本类型属性为xxxValue, 与getXxxValue()对应,
+     * fastjson从map转换时按属性名找不到字段, 只能调用setter设置位标记, 而不是直接写入字段;
+     * 类中已有xxxValue属性时保持原名
+     */
+    private static String storageName(Type type, Type prop, Map<Type, Integer> optionalBits) {
+        String name = fieldName(prop);
+        return optionalBits.containsKey(prop) && !hasProperty(type, name + "Value") ? name + "Value" : name;
+    }
+
+    private static boolean hasProperty(Type type, String fieldName) {
+        for (Type prop : type.properties) {
+            if (fieldName(prop).equals(fieldName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 开启primitiveFields时, number, integer, boolean类型的属性使用基本类型
+     */
+    private String fieldType(Type prop, String typeName) {
+        if (!primitiveFields) {
+            return typeName;
+        }
+        switch (typeName) {
+            case "java.math.BigDecimal":
+                return "double";
+            case "Integer":
+                return "int";
+            case "Boolean":
+                return "boolean";
+            default:
+                return typeName;
+        }
+    }
+
+    private static boolean isPrimitive(String typeName) {
+        return "double".equals(typeName) || "int".equals(typeName) || "boolean".equals(typeName);
+    }
+
+    private static String boxed(String typeName) {
+        switch (typeName) {
+            case "double":
+                return "Double";
+            case "int":
+                return "Integer";
+            case "boolean":
+                return "Boolean";
+            default:
+                return typeName;
+        }
+    }
+
+    private static String optionalBit(int bit) {
+        return bitField("optionalBits", bit) + " |= " + bitMask(bit);
+    }
+
+    private static String bitField(String prefix, int bit) {
+        return prefix + (bit / 64);
+    }
+
+    private static String bitMask(int bit) {
+        return (1L << (bit % 64)) + "L";
+    }
+
+    /**
+     * 可复用请求的reset方法, 所有属性恢复为未赋值的状态
+     */
+    private StringBuffer createReset(Type type, Map<Type, String> fieldTypes, Map<Type, Integer> optionalBits) {
+        StringBuffer sb = new StringBuffer();
         sb.append("    public ");
         sb.append(type.id);
-        sb.append("(");
-        boolean hasOptional = false;
-        int argCount = 0;
-        int optionalArgCount = 0;
-        for(int i=0; i<type.properties.size(); i++) {
-            Type prop = type.properties.get(i);
-            argCount++;
-            if (prop.optional) {
-                optionalArgCount++;
-                hasOptional = true;
+        sb.append(" reset() {");
+        sb.append(CRLF);
+        for (Type prop : type.properties) {
+            String fieldType = fieldTypes.get(prop);
+            sb.append("        this.");
+            sb.append(storageName(type, prop, optionalBits));
+            sb.append(" = ");
+            switch (fieldType) {
+                case "int":
+                    sb.append("0");
+                    break;
+                case "double":
+                    sb.append("0D");
+                    break;
+                case "boolean":
+                    sb.append("false");
+                    break;
+                default:
+                    sb.append("null");
+            }
+            sb.append(";");
+            sb.append(CRLF);
+        }
+        for (int i = 0; i < (optionalBits.size() + 63) / 64; i++) {
+            sb.append("        this.optionalBits");
+            sb.append(i);
+            sb.append(" = 0L;");
+            sb.append(CRLF);
+        }
+        sb.append("        return this;");
+        sb.append(CRLF);
+        sb.append("    }");
+        sb.append(CRLF);
+        sb.append(CRLF);
+        return sb;
+    }
+
+    /**
+     * 延迟解码的事件类的属性名, 属性类型以及待解码位标记
+     */
+    private StringBuffer createLazyFields(Type type, Map<Type, String> fieldTypes) {
+        StringBuffer sb = new StringBuffer();
+        sb.append("    private static final String[] PROPERTY_NAMES = {");
+        for (int i = 0; i < type.properties.size(); i++) {
+            if (i > 0) {
+                sb.append(", ");
             }
+            sb.append("\"");
+            sb.append(type.properties.get(i).name);
+            sb.append("\"");
+        }
+        sb.append("};");
+        sb.append(CRLF);
+        sb.append(CRLF);
+        sb.append("    private static final java.lang.reflect.Type[] PROPERTY_TYPES = {");
+        for (int i = 0; i < type.properties.size(); i++) {
             if (i > 0) {
                 sb.append(", ");
             }
-            String typeName = typeMap.get(prop);
-            sb.append(typeName);
-            sb.append(" ");
-            sb.append(prop.name.equals("this") ? "self" : prop.name);
+            sb.append(typeExpr(boxed(fieldTypes.get(type.properties.get(i)))));
         }
-        sb.append(") {");
+        sb.append("};");
         sb.append(CRLF);
-        for(Type prop : type.properties) {
-            sb.append("        this.");
-            sb.append(prop.name.equals("this") ? "self" : prop.name);
+        sb.append(CRLF);
+        for (int i = 0; i < (type.properties.size() + 63) / 64; i++) {
+            sb.append("    private long pendingBits");
+            sb.append(i);
+            sb.append(";");
+            sb.append(CRLF);
+            sb.append(CRLF);
+        }
+        return sb;
+    }
+
+    /**
+     * 延迟解码的事件类从原始字节构造的constructor, 以及每个属性的解码方法
+     */
+    private StringBuffer createLazyMethods(Type type, Map<Type, String> fieldTypes, Map<Type, Integer> optionalBits) {
+        StringBuffer sb = new StringBuffer();
+        appendLines(sb,
+                "    /**",
+                "    * copies raw[offset, offset + length), raw may be reused once the constructor returns",
+                "    */");
+        sb.append("    public ");
+        sb.append(type.id);
+        sb.append("(byte[] raw, int offset, int length) {");
+        sb.append(CRLF);
+        sb.append("        super(raw, offset, length);");
+        sb.append(CRLF);
+        int count = type.properties.size();
+        for (int i = 0; i < (count + 63) / 64; i++) {
+            int bits = Math.min(64, count - i * 64);
+            sb.append("        this.pendingBits");
+            sb.append(i);
             sb.append(" = ");
-            sb.append(prop.name.equals("this") ? "self" : prop.name);
+            sb.append(bits == 64 ? "-1L" : ((1L << bits) - 1) + "L");
             sb.append(";");
             sb.append(CRLF);
         }
         sb.append("    }");
         sb.append(CRLF);
         sb.append(CRLF);
-
-        //生成可选参数的constructor
-        if (hasOptional) {
-            sb.append("    public ");
-            sb.append(type.id);
-            sb.append("(");
-            int pNum = 0;
-            for (Type prop : type.properties) {
-                if (prop.optional) {
-                    continue;
-                }
-                if (pNum > 0) {
-                    sb.append(", ");
-                }
-                String typeName = typeMap.get(prop);
-                sb.append(typeName);
-                sb.append(" ");
-                sb.append(prop.name.equals("this") ? "self" : prop.name);
-                pNum++;
-            }
-            sb.append(") {");
+        sb.append("    @Override");
+        sb.append(CRLF);
+        sb.append("    protected String[] propertyNames() {");
+        sb.append(CRLF);
+        sb.append("        return PROPERTY_NAMES;");
+        sb.append(CRLF);
+        sb.append("    }");
+        sb.append(CRLF);
+        sb.append(CRLF);
+        for (int i = 0; i < count; i++) {
+            Type prop = type.properties.get(i);
+            String propName = fieldName(prop);
+            String fieldType = fieldTypes.get(prop);
+            Integer bit = optionalBits.get(prop);
+            String storage = storageName(type, prop, optionalBits);
+            sb.append("    private void load");
+            sb.append(StringUtils.capitalize(propName));
+            sb.append("() {");
             sb.append(CRLF);
-            for (Type prop : type.properties) {
-                sb.append("        this.");
-                sb.append(prop.name.equals("this") ? "self" : prop.name);
-                if (prop.optional) {
-                    sb.append(" = null");
-                } else {
-                    sb.append(" = ");
-                    sb.append(prop.name.equals("this") ? "self" : prop.name);
-                }
+            sb.append("        if ((this.");
+            sb.append(bitField("pendingBits", i));
+            sb.append(" & ");
+            sb.append(bitMask(i));
+            sb.append(") != 0) {");
+            sb.append(CRLF);
+            sb.append("            this.");
+            sb.append(bitField("pendingBits", i));
+            sb.append(" &= ~");
+            sb.append(bitMask(i));
+            sb.append(";");
+            sb.append(CRLF);
+            String decode;
+            if (isPrimitive(fieldType)) {
+                decode = "decode" + StringUtils.capitalize(fieldType) + "(" + i + ")";
+            } else if (isBinaryType(fieldType)) {
+                decode = "decodeBinary(" + i + ")";
+            } else {
+                decode = "decode(" + i + ", PROPERTY_TYPES[" + i + "])";
+            }
+            if (bit != null) {
+                sb.append("            if (isPresent(");
+                sb.append(i);
+                sb.append(")) {");
+                sb.append(CRLF);
+                sb.append("                this.");
+                sb.append(storage);
+                sb.append(" = ");
+                sb.append(decode);
+                sb.append(";");
+                sb.append(CRLF);
+                sb.append("                this.");
+                sb.append(optionalBit(bit));
+                sb.append(";");
+                sb.append(CRLF);
+                sb.append("            }");
+                sb.append(CRLF);
+            } else {
+                sb.append("            this.");
+                sb.append(propName);
+                sb.append(" = ");
+                sb.append(decode);
                 sb.append(";");
                 sb.append(CRLF);
             }
+            sb.append("        }");
+            sb.append(CRLF);
             sb.append("    }");
             sb.append(CRLF);
             sb.append(CRLF);
         }
-        if (argCount > 0 && argCount != optionalArgCount) {
-            //生成无参constructor
-            sb.append("    public ");
-            sb.append(type.id);
-            sb.append("() {");
-            sb.append(CRLF);
-            sb.append("    }");
-            sb.append(CRLF);
+        sb.append("    private void decodeAll() {");
+        sb.append(CRLF);
+        for (Type prop : type.properties) {
+            sb.append("        load");
+            sb.append(StringUtils.capitalize(fieldName(prop)));
+            sb.append("();");
             sb.append(CRLF);
         }
-        sb.append("}");
+        sb.append("    }");
+        sb.append(CRLF);
+        sb.append(CRLF);
         return sb;
     }
 
-    public static class Document {
+    /**
+     * 运行时的java.lang.reflect.Type表达式, 泛型使用fastjson的ParameterizedTypeImpl, 不生成匿名类
+     */
+    private static String typeExpr(String typeName) {
+        String itemType = listItemType(typeName);
+        if (itemType != null) {
+            return "new com.alibaba.fastjson.util.ParameterizedTypeImpl(new java.lang.reflect.Type[]{" + typeExpr(itemType) + "}, null, java.util.List.class)";
+        }
+        if ("java.util.Map<String, Object>".equals(typeName)) {
+            return "new com.alibaba.fastjson.util.ParameterizedTypeImpl(new java.lang.reflect.Type[]{String.class, Object.class}, null, java.util.Map.class)";
+        }
+        return typeName + ".class";
+    }
+
+    /**
+     * 内存中的源码, 编译时不需要源文件
+     */
+    private static class MemorySource extends SimpleJavaFileObject {
+
+        private final byte[] bytes;
+
+        MemorySource(String path, byte[] bytes) {
+            super(URI.create("string:///" + path), Kind.SOURCE);
+            this.bytes = bytes;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * 只允许反序列化MODEL_CACHE_CLASSES中的类, 缓存目录可能被多个模块共享, 不信任其中的内容
+     */
+    private static class ModelInputStream extends ObjectInputStream {
+
+        ModelInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            String name = desc.getName();
+            if (!MODEL_CACHE_CLASSES.contains(name)) {
+                throw new InvalidClassException(name, "not allowed in protocol model cache");
+            }
+            return super.resolveClass(desc);
+        }
+
+        @Override
+        protected Class<?> resolveProxyClass(String[] interfaces) throws IOException {
+            throw new InvalidClassException("proxy", "not allowed in protocol model cache");
+        }
+    }
+
+    public static class Document implements Serializable {
+        private static final long serialVersionUID = 1L;
+
         public Version version;
         public List<Domain> domains;
     }
 
-    public static class Version {
+    public static class Version implements Serializable {
+        private static final long serialVersionUID = 1L;
+
         public String major;
         public String minor;
 
@@ -782,7 +4842,9 @@ public class GenMojo extends AbstractMojo {
         }
     }
 
-    public static class Domain {
+    public static class Domain implements Serializable {
+
+        private static final long serialVersionUID = 1L;
 
         public String domain;
 
@@ -800,7 +4862,9 @@ public class GenMojo extends AbstractMojo {
 
     }
 
-    public static class Event {
+    public static class Event implements Serializable {
+
+        private static final long serialVersionUID = 1L;
 
         public String name;
 
@@ -810,7 +4874,9 @@ public class GenMojo extends AbstractMojo {
 
     }
 
-    public static class Command {
+    public static class Command implements Serializable {
+
+        private static final long serialVersionUID = 1L;
 
         public String name;
 
@@ -826,7 +4892,9 @@ public class GenMojo extends AbstractMojo {
 
     }
 
-    public static class Type {
+    public static class Type implements Serializable {
+
+        private static final long serialVersionUID = 1L;
 
         private static volatile String pkg;
 
@@ -851,6 +4919,36 @@ public class GenMojo extends AbstractMojo {
 
         public List<Type> properties;
 
+        /**
+         * 是否是事件参数生成的类
+         */
+        public transient boolean event;
+
+        /**
+         * 是否是可复用的请求类
+         */
+        public transient boolean reusable;
+
+        /**
+         * 合并前的类名, binaryFields按它匹配
+         */
+        public transient String sourceId;
+
+        /**
+         * $ref引用的type, 由resolve阶段链接
+         */
+        public transient Type target;
+
+        /**
+         * domain中定义的type的Domain.id, 由resolve阶段生成
+         */
+        public transient String qualifiedName;
+
+        /**
+         * domain中定义的type生成的完整类名, 由resolve阶段生成
+         */
+        public transient String className;
+
         @JSONField(name = "type")
         public void setType(String type) {
             this.type = TypeType.find(type);
@@ -872,11 +4970,15 @@ public class GenMojo extends AbstractMojo {
         public String getPackage() {
             return pkg + "." + (isEnum() ? "constant" : "entity") + "." + domain.domain.toLowerCase();
         }
+
+        public String getClassName() {
+            return className != null ? className : getPackage() + "." + id;
+        }
     }
 
     public enum TypeType {
 
-        STRING, OBJECT, BOOLEAN, ANY, ARRAY, NUMBER, INTEGER
+        STRING, OBJECT, BOOLEAN, ANY, ARRAY, NUMBER, INTEGER, BINARY
 
         ;
 
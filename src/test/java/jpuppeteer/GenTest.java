@@ -1,22 +1,69 @@
 package jpuppeteer;
 
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.alibaba.fastjson.parser.ParserConfig;
+import com.alibaba.fastjson.serializer.SerializeConfig;
+import jpuppeteer.cdp.CDPConnection;
 import org.apache.maven.plugin.Mojo;
+import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugin.testing.MojoRule;
 import org.apache.maven.plugin.testing.resources.TestResources;
+import org.apache.maven.project.MavenProject;
 import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
 import java.io.File;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class GenTest {
 
+    private static final String PKG = "jpuppeteer.cdp.client";
+
+    private static final String REQUEST_WILL_BE_SENT = "{\"requestId\":\"1000.1\",\"loaderId\":\"L1\",\"documentURL\":\"https://example.com/\","
+            + "\"request\":{\"url\":\"https://example.com/\",\"method\":\"GET\",\"headers\":{\"Accept\":\"text/html\"},"
+            + "\"initialPriority\":\"VeryHigh\",\"referrerPolicy\":\"strict-origin-when-cross-origin\"},"
+            + "\"timestamp\":1.5,\"wallTime\":1600000000.25,\"initiator\":{\"type\":\"other\"},\"type\":\"Document\",\"frameId\":\"F1\"}";
+
+    private static final String DISPATCH_MOUSE_EVENT = "{\"type\":\"mousePressed\",\"x\":512.5,\"y\":384.5,\"modifiers\":0,"
+            + "\"button\":\"left\",\"buttons\":1,\"clickCount\":1}";
+
+    private static final String SCREENCAST_FRAME = "{\"data\":\"aGVsbG8=\",\"metadata\":{\"offsetTop\":1,\"pageScaleFactor\":1,"
+            + "\"deviceWidth\":800,\"deviceHeight\":600,\"scrollOffsetX\":0,\"scrollOffsetY\":0},\"sessionId\":7}";
+
     @Rule
     public MojoRule rule = new MojoRule();
 
     @Rule
     public TestResources resources = new TestResources();
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Test
     public void testGen() throws Exception {
         File projectCopy = this.resources.getBasedir("gen");
@@ -27,4 +74,944 @@ public class GenTest {
         Assert.assertNotNull( mojo );
         mojo.execute();
     }
+
+    /**
+     * primitiveFields: 可选的基本类型属性通过hasXxx()及getXxxValue()读取, 不装箱, 编码结果不变
+     */
+    @Test
+    public void testPrimitiveFields() throws Exception {
+        for (boolean codecs : new boolean[]{false, true}) {
+            File baseDir = folder.newFolder("primitive-" + codecs);
+            configure(baseDir, "primitiveFields", true, "codecs", codecs, "lazyEvents", codecs,
+                    "includes", list("Input.dispatchMouseEvent", "Network.requestWillBeSent")).execute();
+            ClassLoader loader = compile(baseDir);
+            SerializeConfig serializeConfig = new SerializeConfig();
+            ParserConfig parserConfig = new ParserConfig();
+            if (codecs) {
+                loader.loadClass(PKG + ".CDPCodecs").getMethod("register", SerializeConfig.class, ParserConfig.class)
+                        .invoke(null, serializeConfig, parserConfig);
+                loader.loadClass(PKG + ".CDPLazyObject").getMethod("setParserConfig", ParserConfig.class).invoke(null, parserConfig);
+            }
+            Class<?> clazz = loader.loadClass(PKG + ".entity.input.DispatchMouseEventRequest");
+            Assert.assertSame(int.class, clazz.getMethod("getModifiersValue").getReturnType());
+            Assert.assertSame(double.class, clazz.getMethod("getForceValue").getReturnType());
+            Assert.assertSame(Integer.class, clazz.getMethod("getModifiers").getReturnType());
+            clazz.getMethod("setModifiers", int.class);
+            Object request = JSON.parseObject(DISPATCH_MOUSE_EVENT, clazz, parserConfig);
+            Assert.assertEquals(true, clazz.getMethod("hasModifiers").invoke(request));
+            Assert.assertEquals(0, clazz.getMethod("getModifiersValue").invoke(request));
+            Assert.assertEquals(1, clazz.getMethod("getClickCountValue").invoke(request));
+            Assert.assertEquals(384.5, clazz.getMethod("getY").invoke(request));
+            Assert.assertEquals(false, clazz.getMethod("hasForce").invoke(request));
+            Assert.assertEquals(0.0, clazz.getMethod("getForceValue").invoke(request));
+            Assert.assertNull(clazz.getMethod("getForce").invoke(request));
+            //从JSONObject转换时通过setter设置位标记
+            Object converted = JSON.parseObject(DISPATCH_MOUSE_EVENT).toJavaObject(clazz, parserConfig, 0);
+            Assert.assertEquals(true, clazz.getMethod("hasModifiers").invoke(converted));
+            Assert.assertEquals(1, clazz.getMethod("getClickCountValue").invoke(converted));
+            Assert.assertEquals(false, clazz.getMethod("hasForce").invoke(converted));
+            //没有编解码器时fastjson按名称写出枚举, 只比较属性及基本类型的值
+            JSONObject written = JSON.parseObject(JSON.toJSONString(request, serializeConfig));
+            Assert.assertEquals(JSON.parseObject(DISPATCH_MOUSE_EVENT).keySet(), written.keySet());
+            Assert.assertEquals(0, written.getIntValue("modifiers"));
+            Assert.assertEquals(1, written.getIntValue("clickCount"));
+            Assert.assertEquals(384.5, written.getDoubleValue("y"), 0);
+            clazz.getMethod("setForce", double.class).invoke(request, 0.5);
+            Assert.assertEquals(0.5, clazz.getMethod("getForceValue").invoke(request));
+            Assert.assertEquals(0.5, JSON.parseObject(JSON.toJSONString(request, serializeConfig)).getDoubleValue("force"), 0);
+
+            Class<?> event = loader.loadClass(PKG + ".entity.network.RequestWillBeSentEvent");
+            String json = REQUEST_WILL_BE_SENT.replace("\"frameId\":\"F1\"", "\"frameId\":\"F1\",\"hasUserGesture\":true");
+            Object parsed = JSON.parseObject(json, event, parserConfig);
+            Assert.assertEquals(true, event.getMethod("hasHasUserGesture").invoke(parsed));
+            Assert.assertEquals(true, event.getMethod("getHasUserGestureValue").invoke(parsed));
+            if (codecs) {
+                assertRoundTrip(clazz, DISPATCH_MOUSE_EVENT, serializeConfig, parserConfig);
+                assertRoundTrip(event, json, serializeConfig, parserConfig);
+            }
+        }
+    }
+
+    /**
+     * 注册编解码器后, parseObject及JSONObject.toJavaObject得到相同的对象
+     */
+    @Test
+    public void testCodecRoundTrip() throws Exception {
+        File baseDir = folder.newFolder("codecs");
+        configure(baseDir, "codecs", true, "binary", true,
+                "includes", list("Network.requestWillBeSent", "Page.screencastFrame")).execute();
+        ClassLoader loader = compile(baseDir);
+        SerializeConfig serializeConfig = new SerializeConfig();
+        ParserConfig parserConfig = new ParserConfig();
+        loader.loadClass(PKG + ".CDPCodecs").getMethod("register", SerializeConfig.class, ParserConfig.class)
+                .invoke(null, serializeConfig, parserConfig);
+        assertRoundTrip(loader.loadClass(PKG + ".entity.network.RequestWillBeSentEvent"), REQUEST_WILL_BE_SENT, serializeConfig, parserConfig);
+        assertRoundTrip(loader.loadClass(PKG + ".entity.page.ScreencastFrameEvent"), SCREENCAST_FRAME, serializeConfig, parserConfig);
+    }
+
+    /**
+     * 不可变类的equals, hashCode, toBuilder, 以及有无编解码器时的parseObject和toJavaObject
+     */
+    @Test
+    public void testImmutableEntities() throws Exception {
+        for (boolean codecs : new boolean[]{false, true}) {
+            File baseDir = folder.newFolder("immutable-" + codecs);
+            configure(baseDir, "immutableEntities", true, "codecs", codecs,
+                    "includes", list("Network.requestWillBeSent", "Page.screencastFrame")).execute();
+            ClassLoader loader = compile(baseDir);
+            SerializeConfig serializeConfig = new SerializeConfig();
+            ParserConfig parserConfig = new ParserConfig();
+            if (codecs) {
+                loader.loadClass(PKG + ".CDPCodecs").getMethod("register", SerializeConfig.class, ParserConfig.class)
+                        .invoke(null, serializeConfig, parserConfig);
+            }
+            Class<?> frameClass = loader.loadClass(PKG + ".entity.page.ScreencastFrameEvent");
+            Object parsed = JSON.parseObject(SCREENCAST_FRAME, frameClass, parserConfig);
+            Object converted = JSON.parseObject(SCREENCAST_FRAME).toJavaObject(frameClass, parserConfig, 0);
+            Assert.assertNotSame(parsed, converted);
+            Assert.assertEquals(parsed, converted);
+            Assert.assertEquals(parsed.hashCode(), converted.hashCode());
+            Assert.assertEquals(JSON.parseObject(SCREENCAST_FRAME), JSON.parseObject(JSON.toJSONString(parsed, serializeConfig)));
+
+            Class<?> clazz = loader.loadClass(PKG + ".entity.network.RequestWillBeSentEvent");
+            Assert.assertTrue(Modifier.isFinal(clazz.getModifiers()));
+            if (codecs) {
+                assertRoundTrip(clazz, REQUEST_WILL_BE_SENT, serializeConfig, parserConfig);
+            }
+            Object event = JSON.parseObject(REQUEST_WILL_BE_SENT, clazz, parserConfig);
+            Object builder = clazz.getMethod("toBuilder").invoke(event);
+            Method build = builder.getClass().getMethod("build");
+            Object copy = build.invoke(builder);
+            Assert.assertNotSame(event, copy);
+            Assert.assertEquals(event, copy);
+            Assert.assertEquals(event.hashCode(), copy.hashCode());
+            builder.getClass().getMethod("setFrameId", String.class).invoke(builder, "F2");
+            Object changed = build.invoke(builder);
+            Assert.assertNotEquals(event, changed);
+            Assert.assertEquals("F1", clazz.getMethod("getFrameId").invoke(event));
+            Assert.assertEquals("F2", clazz.getMethod("getFrameId").invoke(changed));
+            Object request = clazz.getMethod("getRequest").invoke(event);
+            Map<?, ?> headers = (Map<?, ?>) request.getClass().getMethod("getHeaders").invoke(request);
+            Assert.assertEquals("text/html", headers.get("Accept"));
+            try {
+                headers.clear();
+                Assert.fail("headers of an immutable entity must be unmodifiable");
+            } catch (UnsupportedOperationException expected) {
+            }
+        }
+    }
+
+    /**
+     * 增量模式重新生成时的写入, 未变化及删除的文件数量, baseDir变化后不删除新目录中的文件
+     */
+    @Test
+    public void testIncremental() throws Exception {
+        File baseDir = folder.newFolder("incremental");
+        File report = new File(folder.getRoot(), "incremental-report.json");
+        JSONObject first = generateReport(configure(baseDir, "incremental", true, "reportFile", report, "includes", list("Page.*")), report);
+        int total = first.getIntValue("written");
+        Assert.assertTrue(total > 0);
+        Assert.assertEquals(0, first.getIntValue("unchanged"));
+        Assert.assertEquals(0, first.getIntValue("stale"));
+
+        JSONObject second = generateReport(configure(baseDir, "incremental", true, "reportFile", report, "includes", list("Page.*")), report);
+        Assert.assertEquals(0, second.getIntValue("written"));
+        Assert.assertEquals(total, second.getIntValue("unchanged"));
+        Assert.assertEquals(0, second.getIntValue("stale"));
+
+        //手工修改的文件会被重新写入
+        File navigate = new File(baseDir, "jpuppeteer/cdp/client/entity/page/NavigateRequest.java");
+        Files.write(navigate.toPath(), "modified".getBytes(StandardCharsets.UTF_8));
+        JSONObject third = generateReport(configure(baseDir, "incremental", true, "reportFile", report, "includes", list("Page.*")), report);
+        Assert.assertEquals(1, third.getIntValue("written"));
+        Assert.assertEquals(total - 1, third.getIntValue("unchanged"));
+        Assert.assertTrue(new String(Files.readAllBytes(navigate.toPath()), StandardCharsets.UTF_8).contains("class NavigateRequest"));
+
+        JSONObject fourth = generateReport(configure(baseDir, "incremental", true, "reportFile", report,
+                "includes", list("Page.*"), "excludes", list("Page.navigate")), report);
+        //Page.java去掉了navigate方法, NavigateRequest, NavigateResponse及只被navigate引用的ReferrerPolicy被删除
+        Assert.assertEquals(1, fourth.getIntValue("written"));
+        Assert.assertEquals(3, fourth.getIntValue("stale"));
+        Assert.assertEquals(total - 4, fourth.getIntValue("unchanged"));
+        Assert.assertFalse(navigate.exists());
+        Assert.assertFalse(new File(baseDir, "jpuppeteer/cdp/client/entity/page/NavigateResponse.java").exists());
+        Assert.assertFalse(new File(baseDir, "jpuppeteer/cdp/client/constant/page/ReferrerPolicy.java").exists());
+
+        //清单记录的是另一个baseDir, 其中的文件不能按相对路径在新目录中删除
+        File movedDir = folder.newFolder("incremental-moved");
+        File unrelated = new File(movedDir, "jpuppeteer/cdp/client/entity/page/ReloadRequest.java");
+        unrelated.getParentFile().mkdirs();
+        Files.write(unrelated.toPath(), "keep".getBytes(StandardCharsets.UTF_8));
+        JSONObject moved = generateReport(configure(movedDir, "incremental", true, "reportFile", report,
+                "manifestFile", new File(baseDir, ".jpuppeteer-generator.manifest"),
+                "includes", list("Page.*"), "excludes", list("Page.navigate", "Page.reload")), report);
+        Assert.assertEquals(0, moved.getIntValue("stale"));
+        Assert.assertTrue(unrelated.exists());
+    }
+
+    /**
+     * 多线程生成的文件与单线程生成的完全相同
+     */
+    @Test
+    public void testParallel() throws Exception {
+        File serial = folder.newFolder("serial");
+        configure(serial, "threads", 1, "listeners", true, "codecs", true).execute();
+        File parallel = folder.newFolder("parallel");
+        configure(parallel, "threads", 4, "listeners", true, "codecs", true).execute();
+        Map<String, byte[]> expected = readTree(serial);
+        Map<String, byte[]> actual = readTree(parallel);
+        Assert.assertTrue(expected.size() > 1000);
+        Assert.assertEquals(expected.keySet(), actual.keySet());
+        for (Map.Entry<String, byte[]> entry : expected.entrySet()) {
+            Assert.assertArrayEquals(entry.getKey(), entry.getValue(), actual.get(entry.getKey()));
+        }
+    }
+
+    /**
+     * 输出目录为空时多个线程同时创建同一包目录, 每个文件都写出且与单线程的结果相同
+     */
+    @Test
+    public void testParallelEmptyDir() throws Exception {
+        File serial = folder.newFolder("serial-empty");
+        configure(serial, "threads", 1).execute();
+        Map<String, byte[]> expected = readTree(serial);
+        for (int i = 0; i < 3; i++) {
+            File parallel = new File(folder.newFolder("parallel-empty-" + i), "out");
+            Assert.assertFalse(parallel.exists());
+            configure(parallel, "threads", 4).execute();
+            Map<String, byte[]> actual = readTree(parallel);
+            Assert.assertEquals(expected.keySet(), actual.keySet());
+            for (Map.Entry<String, byte[]> entry : expected.entrySet()) {
+                Assert.assertArrayEquals(entry.getKey(), entry.getValue(), actual.get(entry.getKey()));
+            }
+        }
+    }
+
+    /**
+     * 协议按UTF-8流式解析, 跨越读取缓冲区边界的多字节字符不会被截断
+     */
+    @Test
+    public void testProtocolCharset() throws Exception {
+        StringBuilder description = new StringBuilder();
+        while (description.length() < 20000) {
+            description.append("é中✓𝄞 ");
+        }
+        String domain = "{\"domain\":\"Test\",\"types\":[{\"id\":\"Item\",\"type\":\"object\",\"description\":\"" + description
+                + "\",\"properties\":[{\"name\":\"name\",\"type\":\"string\",\"description\":\"名称\"}]}]}";
+        File baseDir = folder.newFolder("charset");
+        configureProtocol(baseDir, domain).execute();
+        String item = new String(Files.readAllBytes(new File(baseDir, "jpuppeteer/cdp/client/entity/test/Item.java").toPath()), StandardCharsets.UTF_8);
+        Assert.assertTrue(item.contains("* " + description + "\r\n"));
+        Assert.assertTrue(item.contains("* 名称\r\n"));
+    }
+
+    /**
+     * 事件类型按String, CharSequence及字节查找
+     */
+    @Test
+    public void testEventTypeLookup() throws Exception {
+        File baseDir = folder.newFolder("eventType");
+        configure(baseDir, "includes", list("Network.requestWillBeSent", "Page.*")).execute();
+        ClassLoader loader = compile(baseDir);
+        Class<?> eventType = loader.loadClass(PKG + ".CDPEventType");
+        Method findByName = eventType.getMethod("findByName", String.class);
+        Method findByChars = eventType.getMethod("findByName", CharSequence.class);
+        Method findByBytes = eventType.getMethod("findByName", byte[].class, int.class, int.class);
+        Method getName = eventType.getMethod("getName");
+        for (Object type : eventType.getEnumConstants()) {
+            String name = (String) getName.invoke(type);
+            Assert.assertSame(type, findByName.invoke(null, name));
+            Assert.assertSame(type, findByChars.invoke(null, new StringBuilder(name)));
+            byte[] bytes = ("{\"method\":\"" + name + "\"}").getBytes(StandardCharsets.UTF_8);
+            Assert.assertSame(type, findByBytes.invoke(null, bytes, 11, name.length()));
+            Assert.assertNull(findByBytes.invoke(null, bytes, 10, name.length()));
+        }
+        Assert.assertNotNull(findByName.invoke(null, "Page.frameNavigated"));
+        Assert.assertNull(findByName.invoke(null, "Network.requestWillBeSen"));
+        Assert.assertNull(findByName.invoke(null, "Network.responseReceived"));
+        Assert.assertNull(findByChars.invoke(null, new StringBuilder("Network.requestWillBeSentX")));
+        Assert.assertNull(findByName.invoke(null, (String) null));
+    }
+
+    /**
+     * 枚举按String, CharSequence及字节查找
+     */
+    @Test
+    public void testEnumLookup() throws Exception {
+        File baseDir = folder.newFolder("enums");
+        configure(baseDir, "includes", list("Network.requestWillBeSent")).execute();
+        ClassLoader loader = compile(baseDir);
+        for (String name : list("ResourcePriority", "ResourceType", "RequestReferrerPolicy")) {
+            Class<?> clazz = loader.loadClass(PKG + ".constant.network." + name);
+            Method findByValue = clazz.getMethod("findByValue", String.class);
+            Method findByChars = clazz.getMethod("findByValue", CharSequence.class);
+            Method findByBytes = clazz.getMethod("findByValue", byte[].class, int.class, int.class);
+            Method value = clazz.getMethod("value");
+            for (Object constant : clazz.getEnumConstants()) {
+                String text = (String) value.invoke(constant);
+                Assert.assertSame(constant, findByValue.invoke(null, text));
+                Assert.assertSame(constant, findByChars.invoke(null, new StringBuilder(text)));
+                byte[] bytes = ("\"" + text + "\"").getBytes(StandardCharsets.UTF_8);
+                Assert.assertSame(constant, findByBytes.invoke(null, bytes, 1, bytes.length - 2));
+                Assert.assertNull(findByValue.invoke(null, text + "x"));
+                Assert.assertNull(findByBytes.invoke(null, bytes, 0, bytes.length - 2));
+            }
+            Assert.assertNull(findByValue.invoke(null, (String) null));
+        }
+        Class<?> priority = loader.loadClass(PKG + ".constant.network.ResourcePriority");
+        Assert.assertNull(priority.getMethod("findByValue", String.class).invoke(null, "VERYHIGH"));
+        Assert.assertNull(priority.getMethod("findByValue", String.class).invoke(null, "Very"));
+    }
+
+    /**
+     * 事件解码器: params在method之前时得到与method在前时相同的事件, 未知事件的params为JSONObject
+     */
+    @Test
+    public void testEventDecoder() throws Exception {
+        for (boolean codecs : new boolean[]{false, true}) {
+            File baseDir = folder.newFolder("eventDecoder-" + codecs);
+            configure(baseDir, "eventDecoder", true, "codecs", codecs, "includes", list("Network.requestWillBeSent")).execute();
+            ClassLoader loader = compile(baseDir);
+            SerializeConfig serializeConfig = new SerializeConfig();
+            ParserConfig parserConfig = new ParserConfig();
+            if (codecs) {
+                loader.loadClass(PKG + ".CDPCodecs").getMethod("register", SerializeConfig.class, ParserConfig.class)
+                        .invoke(null, serializeConfig, parserConfig);
+            }
+            Class<?> decoder = loader.loadClass(PKG + ".CDPEventDecoder");
+            Method decode = decoder.getMethod("decode", String.class, ParserConfig.class);
+            Class<?> message = loader.loadClass(PKG + ".CDPEventDecoder$Message");
+            Method getParams = message.getMethod("getParams");
+            Method getSessionId = message.getMethod("getSessionId");
+            Class<?> event = loader.loadClass(PKG + ".entity.network.RequestWillBeSentEvent");
+            Object methodFirst = decode.invoke(null, "{\"method\":\"Network.requestWillBeSent\",\"params\":" + REQUEST_WILL_BE_SENT + ",\"sessionId\":\"S1\"}", parserConfig);
+            Object paramsFirst = decode.invoke(null, "{\"sessionId\":\"S1\",\"params\":" + REQUEST_WILL_BE_SENT + " ,\"method\":\"Network.requestWillBeSent\"}", parserConfig);
+            Assert.assertSame(event, getParams.invoke(methodFirst).getClass());
+            Assert.assertSame(event, getParams.invoke(paramsFirst).getClass());
+            Assert.assertEquals("S1", getSessionId.invoke(paramsFirst));
+            String expected = JSON.toJSONString(getParams.invoke(methodFirst), serializeConfig);
+            Assert.assertEquals(expected, JSON.toJSONString(getParams.invoke(paramsFirst), serializeConfig));
+            Assert.assertEquals(expected, JSON.toJSONString(JSON.parseObject(REQUEST_WILL_BE_SENT, event, parserConfig), serializeConfig));
+            Object unknown = decode.invoke(null, "{\"params\":{\"a\":1},\"method\":\"Network.unknown\"}", parserConfig);
+            Assert.assertEquals(JSON.parseObject("{\"a\":1}"), getParams.invoke(unknown));
+        }
+    }
+
+    /**
+     * 延迟解码的事件: 从消息字节分发, 解码后复用缓冲区不影响事件, 编码结果与原始params一致
+     */
+    @Test
+    public void testLazyEvents() throws Exception {
+        File baseDir = folder.newFolder("lazy");
+        configure(baseDir, "lazyEvents", true, "eventDecoder", true, "codecs", true,
+                "includes", list("Network.requestWillBeSent")).execute();
+        ClassLoader loader = compile(baseDir);
+        SerializeConfig serializeConfig = new SerializeConfig();
+        ParserConfig parserConfig = new ParserConfig();
+        loader.loadClass(PKG + ".CDPCodecs").getMethod("register", SerializeConfig.class, ParserConfig.class)
+                .invoke(null, serializeConfig, parserConfig);
+        loader.loadClass(PKG + ".CDPLazyObject").getMethod("setParserConfig", ParserConfig.class).invoke(null, parserConfig);
+        Class<?> decoder = loader.loadClass(PKG + ".CDPEventDecoder");
+        Method decode = decoder.getMethod("decode", byte[].class, int.class, int.class, ParserConfig.class);
+        String message = "{\"method\":\"Network.requestWillBeSent\",\"params\":" + REQUEST_WILL_BE_SENT + ",\"sessionId\":\"S1\"}";
+        byte[] buffer = ("  " + message + "  ").getBytes(StandardCharsets.UTF_8);
+        Object decoded = decode.invoke(null, buffer, 2, buffer.length - 4, parserConfig);
+        Arrays.fill(buffer, (byte) ' ');
+        Class<?> messageClass = decoded.getClass();
+        Assert.assertEquals("Network.requestWillBeSent", messageClass.getMethod("getMethod").invoke(decoded));
+        Assert.assertEquals("S1", messageClass.getMethod("getSessionId").invoke(decoded));
+        Object event = messageClass.getMethod("getParams").invoke(decoded);
+        Class<?> clazz = loader.loadClass(PKG + ".entity.network.RequestWillBeSentEvent");
+        Assert.assertSame(clazz, event.getClass());
+        Assert.assertEquals("F1", clazz.getMethod("getFrameId").invoke(event));
+        Assert.assertEquals(JSON.parseObject(REQUEST_WILL_BE_SENT), JSON.parseObject(JSON.toJSONString(event, serializeConfig)));
+        //未知事件的params保留为JSONObject
+        byte[] unknown = "{\"method\":\"Page.frameNavigated\",\"params\":{\"frame\":{\"id\":\"F1\"}}}".getBytes(StandardCharsets.UTF_8);
+        Object other = decode.invoke(null, unknown, 0, unknown.length, parserConfig);
+        Assert.assertEquals(JSON.parseObject("{\"frame\":{\"id\":\"F1\"}}"), messageClass.getMethod("getParams").invoke(other));
+        //按文本解码时params在method之前
+        Object text = decoder.getMethod("decode", String.class, ParserConfig.class).invoke(null,
+                "{\"params\":" + REQUEST_WILL_BE_SENT + ",\"method\":\"Network.requestWillBeSent\"}", parserConfig);
+        Assert.assertEquals(JSON.toJSONString(event, serializeConfig), JSON.toJSONString(messageClass.getMethod("getParams").invoke(text), serializeConfig));
+        assertRoundTrip(clazz, REQUEST_WILL_BE_SENT, serializeConfig, parserConfig);
+    }
+
+    /**
+     * 分发器按事件类型把事件交给所属domain的监听器, 没有设置监听器时忽略事件
+     */
+    @Test
+    public void testListeners() throws Exception {
+        File baseDir = folder.newFolder("listeners");
+        configure(baseDir, "listeners", true, "includes", list("Network.requestWillBeSent", "Page.*")).execute();
+        ClassLoader loader = compile(baseDir);
+        Class<?> eventType = loader.loadClass(PKG + ".CDPEventType");
+        Class<?> dispatcherClass = loader.loadClass(PKG + ".CDPEventDispatcher");
+        Object dispatcher = dispatcherClass.newInstance();
+        Method dispatch = dispatcherClass.getMethod("dispatch", eventType, Object.class);
+        List<Object[]> calls = new ArrayList<>();
+        for (Object type : eventType.getEnumConstants()) {
+            String[] name = ((String) eventType.getMethod("getName").invoke(type)).split("\\.");
+            Class<?> clazz = (Class<?>) eventType.getMethod("getClazz").invoke(type);
+            Object event = clazz != null ? clazz.newInstance() : null;
+            //没有监听器
+            dispatch.invoke(dispatcher, type, event);
+            Class<?> listenerClass = loader.loadClass(PKG + ".listener." + name[0] + "Listener");
+            Object listener = Proxy.newProxyInstance(loader, new Class<?>[]{listenerClass}, (proxy, method, args) -> {
+                calls.add(new Object[]{method.getName(), args != null ? args[0] : null});
+                return null;
+            });
+            dispatcherClass.getMethod("set" + name[0] + "Listener", listenerClass).invoke(dispatcher, listener);
+            calls.clear();
+            dispatch.invoke(dispatcher, type, event);
+            Assert.assertEquals(1, calls.size());
+            Assert.assertEquals("on" + Character.toUpperCase(name[1].charAt(0)) + name[1].substring(1), calls.get(0)[0]);
+            Assert.assertSame(event, calls.get(0)[1]);
+            dispatcherClass.getMethod("set" + name[0] + "Listener", listenerClass).invoke(dispatcher, (Object) null);
+        }
+        Assert.assertTrue(eventType.getEnumConstants().length > 10);
+    }
+
+    /**
+     * includes只生成匹配的command及其引用的type, excludes去掉匹配的command
+     */
+    @Test
+    public void testShake() throws Exception {
+        File included = folder.newFolder("includes");
+        configure(included, "includes", list("Page.navigate")).execute();
+        String root = "jpuppeteer/cdp/client/";
+        Assert.assertTrue(new File(included, root + "domain/Page.java").isFile());
+        Assert.assertTrue(new File(included, root + "entity/page/NavigateRequest.java").isFile());
+        Assert.assertTrue(new File(included, root + "entity/page/NavigateResponse.java").isFile());
+        Assert.assertTrue(new File(included, root + "constant/page/TransitionType.java").isFile());
+        Assert.assertFalse(new File(included, root + "entity/page/ReloadRequest.java").exists());
+        Assert.assertFalse(new File(included, root + "entity/page/FrameNavigatedEvent.java").exists());
+        Assert.assertFalse(new File(included, root + "domain/Network.java").exists());
+        String page = new String(Files.readAllBytes(new File(included, root + "domain/Page.java").toPath()), StandardCharsets.UTF_8);
+        Assert.assertTrue(page.contains(" navigate("));
+        Assert.assertFalse(page.contains(" reload("));
+
+        File excluded = folder.newFolder("excludes");
+        configure(excluded, "includes", list("Page.*"), "excludes", list("Page.navigate")).execute();
+        Assert.assertTrue(new File(excluded, root + "entity/page/ReloadRequest.java").isFile());
+        Assert.assertTrue(new File(excluded, root + "entity/page/FrameNavigatedEvent.java").isFile());
+        Assert.assertFalse(new File(excluded, root + "entity/page/NavigateRequest.java").exists());
+        Assert.assertFalse(new File(excluded, root + "domain/Network.java").exists());
+    }
+
+
+    /**
+     * CDPBinary在多个线程中第一次访问时得到相同的数据, 解码后仍按原始的base64写出
+     */
+    @Test
+    public void testBinary() throws Exception {
+        File baseDir = folder.newFolder("binary");
+        configure(baseDir, "binary", true, "codecs", true, "includes", list("Page.screencastFrame")).execute();
+        ClassLoader loader = compile(baseDir);
+        Class<?> binaryClass = loader.loadClass(PKG + ".CDPBinary");
+        Assert.assertTrue(Modifier.isVolatile(binaryClass.getDeclaredField("decoded").getModifiers()));
+        Assert.assertTrue(Modifier.isFinal(binaryClass.getDeclaredField("encoded").getModifiers()));
+        byte[] text = " \"aGVsbG8gd29ybGQ=\" ".getBytes(StandardCharsets.US_ASCII);
+        Object binary = binaryClass.getMethod("ofBase64", byte[].class, int.class, int.class).invoke(null, text, 2, text.length - 4);
+        Assert.assertEquals(11, binaryClass.getMethod("size").invoke(binary));
+        Method array = binaryClass.getMethod("array");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Object>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> array.invoke(binary)));
+            }
+            for (Future<Object> future : futures) {
+                Assert.assertArrayEquals("hello world".getBytes(StandardCharsets.US_ASCII), (byte[]) future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        Assert.assertEquals("\"aGVsbG8gd29ybGQ=\"", JSON.toJSONString(binary));
+        Object wrapped = binaryClass.getMethod("of", byte[].class).invoke(null, (Object) "hello".getBytes(StandardCharsets.US_ASCII));
+        Assert.assertEquals("\"aGVsbG8=\"", JSON.toJSONString(wrapped));
+        Assert.assertEquals(5, binaryClass.getMethod("size").invoke(wrapped));
+    }
+
+    /**
+     * batchCommands: 有参数的command生成xxxBatch, 一次调用connection.sendBatch发送全部请求
+     */
+    @Test
+    public void testBatchCommands() throws Exception {
+        File baseDir = folder.newFolder("batch");
+        configure(baseDir, "batchCommands", true, "includes", list("Page.enable", "Page.navigate", "Page.reload")).execute();
+        ClassLoader loader = compile(baseDir);
+        Class<?> page = loader.loadClass(PKG + ".domain.Page");
+        CDPConnection connection = new CDPConnection();
+        Object domain = page.getConstructor(CDPConnection.class).newInstance(connection);
+        Class<?> navigateRequest = loader.loadClass(PKG + ".entity.page.NavigateRequest");
+        List<Object> requests = new ArrayList<>();
+        for (String url : list("https://a.example/", "https://b.example/")) {
+            Object request = navigateRequest.newInstance();
+            navigateRequest.getMethod("setUrl", String.class).invoke(request, url);
+            requests.add(request);
+        }
+        Assert.assertNotNull(page.getMethod("navigateBatch", List.class).invoke(domain, requests));
+        Assert.assertEquals(list("sendBatch Page.navigate"), connection.calls);
+        Assert.assertEquals("Page.navigate", connection.method);
+        Assert.assertSame(requests, connection.request);
+        page.getMethod("reloadBatch", List.class).invoke(domain, new ArrayList<>());
+        Assert.assertEquals(list("sendBatch Page.navigate", "sendBatch Page.reload"), connection.calls);
+        //没有参数的command不生成批量方法
+        Assert.assertFalse(Arrays.stream(page.getMethods()).anyMatch(method -> method.getName().equals("enableBatch")));
+        page.getMethod("enable").invoke(domain);
+        Assert.assertEquals("send Page.enable", connection.calls.get(2));
+    }
+
+    /**
+     * preEncodedMethods: CDPMethod按协议顺序编号, getPrefix()为预先编码的method片段, domain类传给connection的是CDPMethod常量
+     */
+    @Test
+    public void testPreEncodedMethods() throws Exception {
+        File baseDir = folder.newFolder("pre-encoded");
+        configure(baseDir, "preEncodedMethods", true, "batchCommands", true, "includes", list("Page.enable", "Page.navigate")).execute();
+        ClassLoader loader = compile(baseDir);
+        Class<?> methodClass = loader.loadClass(PKG + ".CDPMethod");
+        Object[] methods = methodClass.getEnumConstants();
+        Assert.assertEquals(2, methods.length);
+        Object navigate = methods[1];
+        Assert.assertEquals("PAGE_NAVIGATE", ((Enum<?>) navigate).name());
+        Assert.assertEquals("Page.navigate", methodClass.getMethod("getName").invoke(navigate));
+        Assert.assertEquals(1, methodClass.getMethod("getId").invoke(navigate));
+        Assert.assertEquals("{\"method\":\"Page.navigate\"", new String((byte[]) methodClass.getMethod("getPrefix").invoke(navigate), StandardCharsets.UTF_8));
+        Assert.assertSame(navigate, methodClass.getMethod("findByName", String.class).invoke(null, "Page.navigate"));
+        Assert.assertNull(methodClass.getMethod("findByName", String.class).invoke(null, "Page.reload"));
+
+        Class<?> page = loader.loadClass(PKG + ".domain.Page");
+        Assert.assertFalse(source(baseDir, page).contains("\"Page.navigate\""));
+        CDPConnection connection = new CDPConnection();
+        Object domain = page.getConstructor(CDPConnection.class).newInstance(connection);
+        Class<?> navigateRequest = loader.loadClass(PKG + ".entity.page.NavigateRequest");
+        Object request = navigateRequest.newInstance();
+        page.getMethod("navigate", navigateRequest).invoke(domain, request);
+        Assert.assertSame(navigate, connection.method);
+        Assert.assertSame(request, connection.request);
+        page.getMethod("enable").invoke(domain);
+        Assert.assertSame(methods[0], connection.method);
+        page.getMethod("navigateBatch", List.class).invoke(domain, new ArrayList<>());
+        Assert.assertSame(navigate, connection.method);
+        Assert.assertEquals(list("send Page.navigate", "send Page.enable", "sendBatch Page.navigate"), connection.calls);
+    }
+
+    /**
+     * oneWayCommands及blockingCommands: 没有返回值的command生成xxxNoReply, 所有command生成xxxBlocking,
+     * 开启preEncodedMethods时传给connection的是CDPMethod常量
+     */
+    @Test
+    public void testCommandVariants() throws Exception {
+        for (boolean preEncoded : new boolean[]{false, true}) {
+            File baseDir = folder.newFolder("variants-" + preEncoded);
+            configure(baseDir, "oneWayCommands", true, "blockingCommands", true, "preEncodedMethods", preEncoded,
+                    "includes", list("Page.enable", "Page.navigate")).execute();
+            ClassLoader loader = compile(baseDir);
+            Class<?> page = loader.loadClass(PKG + ".domain.Page");
+            Class<?> navigateRequest = loader.loadClass(PKG + ".entity.page.NavigateRequest");
+            CDPConnection connection = new CDPConnection();
+            Object domain = page.getConstructor(CDPConnection.class).newInstance(connection);
+            //有返回值的command不生成NoReply方法
+            Assert.assertFalse(Arrays.stream(page.getMethods()).anyMatch(method -> method.getName().equals("navigateNoReply")));
+            Method enableNoReply = page.getMethod("enableNoReply");
+            Assert.assertSame(void.class, enableNoReply.getReturnType());
+            enableNoReply.invoke(domain);
+            Assert.assertNull(connection.request);
+
+            Method enableBlocking = page.getMethod("enableBlocking", long.class, TimeUnit.class);
+            Assert.assertSame(void.class, enableBlocking.getReturnType());
+            Method navigateBlocking = page.getMethod("navigateBlocking", navigateRequest, long.class, TimeUnit.class);
+            Assert.assertSame(loader.loadClass(PKG + ".entity.page.NavigateResponse"), navigateBlocking.getReturnType());
+            Assert.assertTrue(Arrays.asList(navigateBlocking.getExceptionTypes()).contains(TimeoutException.class));
+            enableBlocking.invoke(domain, 1L, TimeUnit.SECONDS);
+            Object request = navigateRequest.newInstance();
+            Assert.assertNull(navigateBlocking.invoke(domain, request, 1L, TimeUnit.SECONDS));
+            Assert.assertSame(request, connection.request);
+            Assert.assertEquals(list("sendNoReply Page.enable", "sendBlocking Page.enable", "sendBlocking Page.navigate"), connection.calls);
+            if (preEncoded) {
+                Assert.assertSame(loader.loadClass(PKG + ".CDPMethod"), connection.method.getClass());
+            } else {
+                Assert.assertEquals("Page.navigate", connection.method);
+            }
+        }
+        //默认不生成
+        File baseDir = folder.newFolder("variants-default");
+        configure(baseDir, "includes", list("Page.enable")).execute();
+        String page = new String(Files.readAllBytes(new File(baseDir, "jpuppeteer/cdp/client/domain/Page.java").toPath()), StandardCharsets.UTF_8);
+        Assert.assertFalse(page.contains("NoReply"));
+        Assert.assertFalse(page.contains("Blocking"));
+    }
+
+    /**
+     * reusableRequests: 请求类的setter返回this, reset()清空全部属性, xxxReusing通过sendReusing发送, 不匹配的command不变
+     */
+    @Test
+    public void testReusableRequests() throws Exception {
+        for (boolean primitive : new boolean[]{false, true}) {
+            File baseDir = folder.newFolder("reusable-" + primitive);
+            configure(baseDir, "reusableRequests", list("Input.dispatchMouseEvent"), "primitiveFields", primitive,
+                    "includes", list("Input.dispatchMouseEvent", "Input.dispatchKeyEvent")).execute();
+            ClassLoader loader = compile(baseDir);
+            Class<?> clazz = loader.loadClass(PKG + ".entity.input.DispatchMouseEventRequest");
+            Object request = JSON.parseObject(DISPATCH_MOUSE_EVENT, clazz);
+            Class<?> intType = primitive ? int.class : Integer.class;
+            Assert.assertSame(request, clazz.getMethod("setClickCount", intType).invoke(request, 2));
+            Assert.assertEquals(2, JSON.parseObject(JSON.toJSONString(request)).getIntValue("clickCount"));
+            Assert.assertSame(request, clazz.getMethod("reset").invoke(request));
+            //必需的基本类型属性重置为0, 仍然会写出
+            String empty = primitive ? "{\"x\":0.0,\"y\":0.0}" : "{}";
+            Assert.assertEquals(empty, JSON.toJSONString(request));
+            if (primitive) {
+                Assert.assertEquals(false, clazz.getMethod("hasModifiers").invoke(request));
+                Assert.assertEquals(false, clazz.getMethod("hasClickCount").invoke(request));
+            }
+            clazz.getMethod("setModifiers", intType).invoke(request, 4);
+            JSONObject expected = JSON.parseObject(empty);
+            expected.put("modifiers", 4);
+            Assert.assertEquals(expected, JSON.parseObject(JSON.toJSONString(request)));
+
+            Class<?> input = loader.loadClass(PKG + ".domain.Input");
+            CDPConnection connection = new CDPConnection();
+            Object domain = input.getConstructor(CDPConnection.class).newInstance(connection);
+            input.getMethod("dispatchMouseEventReusing", clazz).invoke(domain, request);
+            Assert.assertEquals(list("sendReusing Input.dispatchMouseEvent"), connection.calls);
+            Assert.assertSame(request, connection.request);
+
+            Class<?> keyEvent = loader.loadClass(PKG + ".entity.input.DispatchKeyEventRequest");
+            Assert.assertSame(void.class, keyEvent.getMethod("setText", String.class).getReturnType());
+            Assert.assertFalse(Arrays.stream(keyEvent.getMethods()).anyMatch(method -> method.getName().equals("reset")));
+            Assert.assertFalse(Arrays.stream(input.getMethods()).anyMatch(method -> method.getName().equals("dispatchKeyEventReusing")));
+        }
+    }
+
+    /**
+     * 模型缓存默认放在构建目录下, 第二次生成加载缓存, 生成的文件相同
+     */
+    @Test
+    public void testModelCache() throws Exception {
+        File buildDirectory = folder.newFolder("cache-target");
+        File report = new File(folder.getRoot(), "cache-report.json");
+        File first = folder.newFolder("cache-first");
+        Assert.assertFalse(generateReport(configure(first, "modelCache", true, "buildDirectory", buildDirectory,
+                "reportFile", report, "includes", list("Page.*")), report).getBooleanValue("modelCached"));
+        File[] caches = new File(buildDirectory, "jpuppeteer-generator/cache").listFiles();
+        Assert.assertNotNull(caches);
+        Assert.assertEquals(1, caches.length);
+        File second = folder.newFolder("cache-second");
+        Assert.assertTrue(generateReport(configure(second, "modelCache", true, "buildDirectory", buildDirectory,
+                "reportFile", report, "includes", list("Page.*")), report).getBooleanValue("modelCached"));
+        Map<String, byte[]> expected = readTree(first);
+        Map<String, byte[]> actual = readTree(second);
+        Assert.assertEquals(expected.keySet(), actual.keySet());
+        for (Map.Entry<String, byte[]> entry : expected.entrySet()) {
+            Assert.assertArrayEquals(entry.getKey(), entry.getValue(), actual.get(entry.getKey()));
+        }
+        Assert.assertArrayEquals(new String[]{"jpuppeteer"}, first.list());
+        try {
+            configure(folder.newFolder("cache-none"), "modelCache", true).execute();
+            Assert.fail("expect modelCache requires cacheDir");
+        } catch (MojoFailureException e) {
+            Assert.assertEquals("modelCache requires cacheDir", e.getMessage());
+        }
+    }
+
+    /**
+     * 预编译的类输出到单独的目录并作为资源目录加入工程, 任何一个class文件缺失都会重新编译
+     */
+    @Test
+    public void testPrecompile() throws Exception {
+        File baseDir = folder.newFolder("precompile");
+        File output = folder.newFolder("precompile-target");
+        File classes = new File(output, "jpuppeteer-generator/classes");
+        MavenProject project = new MavenProject();
+        project.getBuild().setOutputDirectory(new File(output, "classes").getPath());
+        Object[] options = {"precompile", true, "project", project, "classesDirectory", classes,
+                "precompileSourceDir", new File(output, "jpuppeteer-generator/sources"),
+                "sourcesJar", new File(output, "jpuppeteer-generator/generated-sources.jar"),
+                "classpathElements", list(location(JSON.class)), "includes", list("Page.navigate")};
+        configure(baseDir, options).execute();
+        File enumClass = new File(classes, "jpuppeteer/cdp/client/CDPEnum.class");
+        File request = new File(classes, "jpuppeteer/cdp/client/entity/page/NavigateRequest.class");
+        Assert.assertTrue(enumClass.isFile());
+        Assert.assertTrue(request.isFile());
+        Assert.assertFalse(new File(output, "classes").exists());
+        Assert.assertTrue(new File(baseDir, "jpuppeteer/cdp/client/domain/Page.java").isFile());
+        Assert.assertFalse(new File(baseDir, "jpuppeteer/cdp/client/entity").exists());
+        Assert.assertEquals(1, project.getResources().size());
+        Assert.assertEquals(classes.getAbsolutePath(), project.getResources().get(0).getDirectory());
+        Assert.assertEquals(list("**/*.class"), project.getResources().get(0).getIncludes());
+
+        //没有变化时不重新编译, stamp文件只在编译后重写, 也不重复加入资源目录
+        File stamp = new File(output, "jpuppeteer-generator/precompile.stamp");
+        long modified = stamp.lastModified() - 10000;
+        Assert.assertTrue(stamp.setLastModified(modified));
+        configure(baseDir, options).execute();
+        Assert.assertEquals(modified, stamp.lastModified());
+        Assert.assertEquals(1, project.getResources().size());
+
+        //CDPEnum.class之外的class文件缺失也会重新编译
+        Assert.assertTrue(request.delete());
+        configure(baseDir, options).execute();
+        Assert.assertTrue(request.isFile());
+        Assert.assertNotEquals(modified, stamp.lastModified());
+    }
+
+    /**
+     * 会话类为每个domain提供一个访问方法, 多个线程同时访问得到同一个实例, domain使用会话的connection
+     */
+    @Test
+    public void testSession() throws Exception {
+        File baseDir = folder.newFolder("session");
+        configure(baseDir, "sessionClassName", "CDPSession", "includes", list("Page.navigate", "Network.enable")).execute();
+        ClassLoader loader = compile(baseDir);
+        Class<?> sessionClass = loader.loadClass(PKG + ".CDPSession");
+        CDPConnection connection = new CDPConnection();
+        Object session = sessionClass.getConstructor(CDPConnection.class).newInstance(connection);
+        Assert.assertSame(connection, sessionClass.getMethod("getConnection").invoke(session));
+        Method page = sessionClass.getMethod("page");
+        Assert.assertSame(loader.loadClass(PKG + ".domain.Page"), page.getReturnType());
+        Assert.assertSame(loader.loadClass(PKG + ".domain.Network"), sessionClass.getMethod("network").getReturnType());
+        Assert.assertFalse(Arrays.stream(sessionClass.getMethods()).anyMatch(method -> method.getName().equals("runtime")));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Object>> futures = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                futures.add(executor.submit(() -> page.invoke(session)));
+            }
+            Object first = futures.get(0).get();
+            for (Future<Object> future : futures) {
+                Assert.assertSame(first, future.get());
+            }
+            Class<?> navigateRequest = loader.loadClass(PKG + ".entity.page.NavigateRequest");
+            first.getClass().getMethod("navigate", navigateRequest).invoke(first, navigateRequest.newInstance());
+            Assert.assertEquals(list("send Page.navigate"), connection.calls);
+            Assert.assertNotSame(first, page.invoke(sessionClass.getConstructor(CDPConnection.class).newInstance(connection)));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 报告中的文件数量及字节数与生成的文件一致, 按domain统计的合计等于总数
+     */
+    @Test
+    public void testReport() throws Exception {
+        File baseDir = folder.newFolder("report");
+        File reportFile = new File(folder.getRoot(), "report/report.json");
+        JSONObject report = generateReport(configure(baseDir, "reportFile", reportFile, "threads", 2, "pluginVersion", "1.0-test",
+                "includes", list("Page.*", "Network.enable")), reportFile);
+        Assert.assertEquals("1.3", report.getString("protocolVersion"));
+        Assert.assertEquals("1.0-test", report.getString("pluginVersion"));
+        Assert.assertEquals(2, report.getIntValue("threads"));
+        Assert.assertFalse(report.getBooleanValue("modelCached"));
+        Assert.assertEquals(0, report.getIntValue("deduped"));
+
+        Map<String, byte[]> files = readTree(baseDir);
+        long bytes = 0;
+        Map<String, int[]> domains = new TreeMap<>();
+        for (Map.Entry<String, byte[]> entry : files.entrySet()) {
+            bytes += entry.getValue().length;
+            //domain类, entity及constant下的包按domain统计, 其他为共享的类
+            String[] path = entry.getKey().replace(File.separatorChar, '/').split("/");
+            String domain = path[path.length - 2].equals("domain") ? path[path.length - 1].replace(".java", "").toLowerCase()
+                    : path.length > 5 && (path[3].equals("entity") || path[3].equals("constant")) ? path[4] : "(shared)";
+            int[] stats = domains.computeIfAbsent(domain, key -> new int[2]);
+            stats[0]++;
+            stats[1] += entry.getValue().length;
+        }
+        Assert.assertEquals(files.size(), report.getIntValue("written"));
+        Assert.assertEquals(files.size(), report.getIntValue("files"));
+        Assert.assertEquals(bytes, report.getLongValue("bytes"));
+        JSONObject reported = report.getJSONObject("domains");
+        Assert.assertEquals(domains.size(), reported.size());
+        for (String name : reported.keySet()) {
+            int[] stats = domains.get(name.toLowerCase());
+            Assert.assertNotNull(name, stats);
+            Assert.assertEquals(name, stats[0], reported.getJSONObject(name).getIntValue("files"));
+            Assert.assertEquals(name, stats[1], reported.getJSONObject(name).getIntValue("bytes"));
+        }
+        Assert.assertEquals(3, reported.getJSONObject("(shared)").getIntValue("files"));
+
+        Assert.assertEquals(new TreeSet<>(list("parse", "index", "resolve", "shake", "domains", "support")),
+                new TreeSet<>(report.getJSONObject("phases").keySet()));
+        for (String activity : list("commands", "events", "io", "types")) {
+            Assert.assertTrue(activity, report.getJSONObject("activities").getDoubleValue(activity) >= 0);
+        }
+        Assert.assertTrue(report.getLongValue("totalMillis") >= 0);
+    }
+
+    /**
+     * resolve阶段的错误信息包含出错的位置
+     */
+    @Test
+    public void testResolveErrors() throws Exception {
+        String missing = "{\"domain\":\"Test\",\"commands\":[{\"name\":\"run\",\"parameters\":[{\"name\":\"target\",\"$ref\":\"Missing\"}]}]}";
+        assertResolveError(missing, "unknown type reference Missing at Test.run.parameters.target");
+        String cycle = "{\"domain\":\"Test\",\"types\":[{\"id\":\"A\",\"type\":\"array\",\"items\":{\"$ref\":\"B\"}},{\"id\":\"B\",\"$ref\":\"A\"}]}";
+        assertResolveError(cycle, "circular type reference Test.A -> [] -> Test.B -> Test.A");
+    }
+
+    private void assertResolveError(String domain, String message) throws Exception {
+        try {
+            configureProtocol(folder.newFolder(), domain).execute();
+            Assert.fail("expect " + message);
+        } catch (MojoFailureException e) {
+            Assert.assertEquals(message, e.getMessage());
+        }
+    }
+
+    /**
+     * dedupeTypes: 合并的类型数量与少生成的文件数量一致, 合并后的类使用中性的名称, javadoc列出所有使用者
+     */
+    @Test
+    public void testDedupeTypes() throws Exception {
+        File report = new File(folder.getRoot(), "dedupe-report.json");
+        JSONObject plain = generateReport(configure(folder.newFolder("plain"), "reportFile", report), report);
+        Assert.assertEquals(0, plain.getIntValue("deduped"));
+        JSONObject deduped = generateReport(configure(folder.newFolder("dedupe"), "dedupeTypes", true, "reportFile", report), report);
+        int merged = deduped.getIntValue("deduped");
+        Assert.assertTrue(merged > 0);
+        Assert.assertEquals(plain.getIntValue("written") - merged, deduped.getIntValue("written"));
+
+        File baseDir = folder.newFolder("dedupe-names");
+        configure(baseDir, "dedupeTypes", true, "includes", list("DOM.querySelector", "DOM.requestNode",
+                "Page.captureScreenshot", "Page.startScreencast")).execute();
+        ClassLoader loader = compile(baseDir);
+        Class<?> nodeId = loader.loadClass(PKG + ".entity.dom.NodeIdResponse");
+        Class<?> dom = loader.loadClass(PKG + ".domain.DOM");
+        Assert.assertEquals(nodeId, returnType(dom.getMethod("querySelector", loader.loadClass(PKG + ".entity.dom.QuerySelectorRequest"))));
+        Assert.assertEquals(nodeId, returnType(dom.getMethod("requestNode", loader.loadClass(PKG + ".entity.dom.RequestNodeRequest"))));
+        Assert.assertFalse(new File(baseDir, "jpuppeteer/cdp/client/entity/dom/QuerySelectorResponse.java").exists());
+        Assert.assertTrue(source(baseDir, nodeId).contains("* response shared by querySelector, requestNode\r\n"));
+        Class<?> format = loader.loadClass(PKG + ".constant.page.Format");
+        Assert.assertSame(format, loader.loadClass(PKG + ".entity.page.CaptureScreenshotRequest").getMethod("getFormat").getReturnType());
+        Assert.assertSame(format, loader.loadClass(PKG + ".entity.page.StartScreencastRequest").getMethod("getFormat").getReturnType());
+        Assert.assertFalse(new File(baseDir, "jpuppeteer/cdp/client/constant/page/CaptureScreenshotRequestFormat.java").exists());
+        Assert.assertTrue(source(baseDir, format).contains("* values shared by CaptureScreenshotRequest.format, StartScreencastRequest.format\r\n"));
+
+        //与domain中已有的类名冲突时加Shared前缀
+        String value = "[{\"name\":\"value\",\"type\":\"string\",\"enum\":[\"a\",\"b\"]}]";
+        String domain = "{\"domain\":\"Test\",\"types\":[{\"id\":\"ValueResponse\",\"type\":\"string\"},{\"id\":\"Value\",\"type\":\"string\"}],"
+                + "\"commands\":[{\"name\":\"first\",\"returns\":" + value + "},{\"name\":\"second\",\"returns\":" + value + "},"
+                + "{\"name\":\"third\",\"parameters\":" + value + "}]}";
+        File collision = folder.newFolder("dedupe-collision");
+        configureProtocol(collision, domain, "dedupeTypes", true).execute();
+        loader = compile(collision);
+        Class<?> response = loader.loadClass(PKG + ".entity.test.SharedValueResponse");
+        Class<?> values = loader.loadClass(PKG + ".constant.test.SharedValue");
+        Class<?> test = loader.loadClass(PKG + ".domain.Test");
+        Assert.assertEquals(response, returnType(test.getMethod("first")));
+        Assert.assertEquals(response, returnType(test.getMethod("second")));
+        Assert.assertSame(values, response.getMethod("getValue").getReturnType());
+        Assert.assertSame(values, loader.loadClass(PKG + ".entity.test.ThirdRequest").getMethod("getValue").getReturnType());
+        Assert.assertTrue(source(collision, values).contains("* values shared by SharedValueResponse.value, ThirdRequest.value\r\n"));
+    }
+
+    /**
+     * domain方法返回的future的类型参数
+     */
+    private static java.lang.reflect.Type returnType(Method method) {
+        return ((java.lang.reflect.ParameterizedType) method.getGenericReturnType()).getActualTypeArguments()[0];
+    }
+
+    private static String source(File baseDir, Class<?> clazz) throws Exception {
+        File file = new File(baseDir, clazz.getName().replace('.', '/') + ".java");
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    private static JSONObject generateReport(GenMojo mojo, File report) throws Exception {
+        mojo.execute();
+        return JSON.parseObject(new String(Files.readAllBytes(report.toPath()), StandardCharsets.UTF_8));
+    }
+
+    private static void assertRoundTrip(Class<?> clazz, String json, SerializeConfig serializeConfig, ParserConfig parserConfig) {
+        Object parsed = JSON.parseObject(json, clazz, parserConfig);
+        Object converted = JSON.parseObject(json).toJavaObject(clazz, parserConfig, 0);
+        Assert.assertSame(clazz, parsed.getClass());
+        Assert.assertSame(clazz, converted.getClass());
+        String written = JSON.toJSONString(parsed, serializeConfig);
+        Assert.assertEquals(JSON.parseObject(json), JSON.parseObject(written));
+        Assert.assertEquals(written, JSON.toJSONString(converted, serializeConfig));
+    }
+
+    /**
+     * 使用测试工程的配置, 输出到baseDir, options为属性名及属性值
+     */
+    private GenMojo configure(File baseDir, Object... options) throws Exception {
+        File pom = new File(this.resources.getBasedir("gen"), "pom.xml");
+        GenMojo mojo = (GenMojo) rule.configureMojo(new GenMojo(), "jpuppeteer-generator", pom);
+        rule.setVariableValueToObject(mojo, "baseDir", baseDir);
+        for (int i = 0; i < options.length; i += 2) {
+            rule.setVariableValueToObject(mojo, (String) options[i], options[i + 1]);
+        }
+        return mojo;
+    }
+
+    /**
+     * 使用只包含domains的browser协议及空的js协议, 输出到baseDir
+     */
+    private GenMojo configureProtocol(File baseDir, String domains, Object... options) throws Exception {
+        File dir = folder.newFolder();
+        File browser = new File(dir, "browser_protocol.json");
+        File js = new File(dir, "js_protocol.json");
+        String version = "\"version\":{\"major\":\"1\",\"minor\":\"3\"}";
+        Files.write(browser.toPath(), ("{" + version + ",\"domains\":[" + domains + "]}").getBytes(StandardCharsets.UTF_8));
+        Files.write(js.toPath(), ("{" + version + ",\"domains\":[]}").getBytes(StandardCharsets.UTF_8));
+        GenMojo mojo = configure(baseDir, options);
+        rule.setVariableValueToObject(mojo, "browserProtocol", browser);
+        rule.setVariableValueToObject(mojo, "jsProtocol", js);
+        return mojo;
+    }
+
+    /**
+     * 目录下所有java文件的内容, key为相对路径
+     */
+    private static Map<String, byte[]> readTree(File dir) throws Exception {
+        Map<String, byte[]> files = new TreeMap<>();
+        try (Stream<Path> paths = Files.walk(dir.toPath())) {
+            for (Path path : paths.filter(path -> path.toString().endsWith(".java")).collect(Collectors.toList())) {
+                files.put(dir.toPath().relativize(path).toString(), Files.readAllBytes(path));
+            }
+        }
+        return files;
+    }
+
+    private static List<String> list(String... values) {
+        List<String> list = new ArrayList<>();
+        for (String value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+
+    /**
+     * 编译生成的全部类, domain包及会话类使用测试中的CDPConnection
+     */
+    private ClassLoader compile(File baseDir) throws Exception {
+        List<String> sources;
+        try (Stream<Path> paths = Files.walk(baseDir.toPath())) {
+            sources = paths.filter(path -> path.toString().endsWith(".java"))
+                    .map(Path::toString)
+                    .collect(Collectors.toList());
+        }
+        File classes = folder.newFolder();
+        String classpath = location(JSON.class) + File.pathSeparator + location(CDPConnection.class);
+        List<String> args = new ArrayList<>();
+        args.add("-d");
+        args.add(classes.getPath());
+        args.add("-cp");
+        args.add(classpath);
+        args.add("-encoding");
+        args.add("UTF-8");
+        args.add("-nowarn");
+        args.addAll(sources);
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        Assert.assertEquals("compile generated sources", 0, compiler.run(null, null, null, args.toArray(new String[0])));
+        return new URLClassLoader(new URL[]{classes.toURI().toURL()}, GenTest.class.getClassLoader());
+    }
+
+    private static String location(Class<?> clazz) throws Exception {
+        return new File(clazz.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+    }
 }
@@ -0,0 +1,111 @@
+package jpuppeteer.cdp;
+
+import jpuppeteer.util.XFuture;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 用于编译及调用生成的domain类, 只记录调用, 不发送请求,
+ * CDPMethod只在开启preEncodedMethods时生成, 以CDPMethod为参数的重载使用Enum接收
+ */
+public class CDPConnection {
+
+    /**
+     * 每次调用记录为"方法 command名称", 如"send Page.navigate"
+     */
+    public final List<String> calls = new ArrayList<>();
+
+    /**
+     * 最后一次调用传入的方法, 方法名字符串或者CDPMethod
+     */
+    public Object method;
+
+    /**
+     * 最后一次调用传入的请求, 批量调用时为请求列表
+     */
+    public Object request;
+
+    public <T> XFuture<T> send(String method, Object request, Class<T> clazz) {
+        return record("send", method, request);
+    }
+
+    public XFuture<?> send(String method, Object request) {
+        return record("send", method, request);
+    }
+
+    public <T> XFuture<T> send(Enum<?> method, Object request, Class<T> clazz) {
+        return record("send", method, request);
+    }
+
+    public XFuture<?> send(Enum<?> method, Object request) {
+        return record("send", method, request);
+    }
+
+    public <T> XFuture<List<T>> sendBatch(String method, List<?> requests, Class<T> clazz) {
+        return record("sendBatch", method, requests);
+    }
+
+    public XFuture<?> sendBatch(String method, List<?> requests) {
+        return record("sendBatch", method, requests);
+    }
+
+    public <T> XFuture<List<T>> sendBatch(Enum<?> method, List<?> requests, Class<T> clazz) {
+        return record("sendBatch", method, requests);
+    }
+
+    public XFuture<?> sendBatch(Enum<?> method, List<?> requests) {
+        return record("sendBatch", method, requests);
+    }
+
+    public <T> XFuture<T> sendReusing(String method, Object request, Class<T> clazz) {
+        return record("sendReusing", method, request);
+    }
+
+    public XFuture<?> sendReusing(String method, Object request) {
+        return record("sendReusing", method, request);
+    }
+
+    public <T> XFuture<T> sendReusing(Enum<?> method, Object request, Class<T> clazz) {
+        return record("sendReusing", method, request);
+    }
+
+    public XFuture<?> sendReusing(Enum<?> method, Object request) {
+        return record("sendReusing", method, request);
+    }
+
+    public void sendNoReply(String method, Object request) {
+        record("sendNoReply", method, request);
+    }
+
+    public void sendNoReply(Enum<?> method, Object request) {
+        record("sendNoReply", method, request);
+    }
+
+    public <T> T sendBlocking(String method, Object request, Class<T> clazz, long timeout, TimeUnit unit) {
+        record("sendBlocking", method, request);
+        return null;
+    }
+
+    public void sendBlocking(String method, Object request, long timeout, TimeUnit unit) {
+        record("sendBlocking", method, request);
+    }
+
+    public <T> T sendBlocking(Enum<?> method, Object request, Class<T> clazz, long timeout, TimeUnit unit) {
+        record("sendBlocking", method, request);
+        return null;
+    }
+
+    public void sendBlocking(Enum<?> method, Object request, long timeout, TimeUnit unit) {
+        record("sendBlocking", method, request);
+    }
+
+    private <T> XFuture<T> record(String kind, Object method, Object request) {
+        //CDPMethod的toString()返回command名称
+        calls.add(kind + " " + method);
+        this.method = method;
+        this.request = request;
+        return new XFuture<>();
+    }
+}